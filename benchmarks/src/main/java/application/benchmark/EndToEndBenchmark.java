@@ -0,0 +1,106 @@
+package application.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import application.data.ParallelPngWriter;
+import application.data.ReadWriteUtilities;
+import application.data.StreamingWatermarker;
+import application.data.WatermarkCodec;
+import application.data.WatermarkResult;
+
+/**
+ * Load, watermark and save a PNG-file, as the user-interface and the batch-mode do. The input-file
+ * is generated once per trial. Saving is measured with ImageIO and with the ParallelPngWriter;
+ * the streaming watermarker performs all three steps band by band.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class EndToEndBenchmark {
+
+	private static final String		PAYLOAD		= "Benchmark-Watermark";
+
+
+	@Param({"1", "10", "50"})
+	public int						megapixels;
+
+	@Param({"INT_ARGB", "3BYTE_BGR", "BYTE_INDEXED"})
+	public String					imageType;
+
+
+	private WatermarkCodec			codec;
+	private ParallelPngWriter		pngWriter;
+	private StreamingWatermarker	streamer;
+	private File					directory;
+	private File					input;
+	private File					output;
+
+
+
+	@Setup(Level.Trial)
+	public void createInput() throws IOException {
+		codec = ReadWriteUtilities.getDefaultCodec();
+		pngWriter = new ParallelPngWriter();
+		streamer = new StreamingWatermarker();
+		directory = Files.createTempDirectory("watermarker-benchmark").toFile();
+		input = new File(directory, "input.png");
+		output = new File(directory, "output.png");
+		ImageIO.write(SyntheticImages.create(megapixels, imageType, 1), "png", input);
+	}
+
+
+	@TearDown(Level.Trial)
+	public void deleteFiles() {
+		input.delete();
+		output.delete();
+		directory.delete();
+	}
+
+
+
+	@Benchmark
+	public WatermarkResult writeAndSaveWithImageIO() throws IOException {
+		BufferedImage image = ImageIO.read(input);
+		WatermarkResult result = codec.write(PAYLOAD, image);
+		ImageIO.write(image, "png", output);
+		return result;
+	}
+
+
+	@Benchmark
+	public WatermarkResult writeAndSaveWithParallelWriter() throws IOException {
+		BufferedImage image = ImageIO.read(input);
+		WatermarkResult result = codec.write(PAYLOAD, image);
+		pngWriter.write(image, output);
+		return result;
+	}
+
+
+	@Benchmark
+	public WatermarkResult writeStreaming() throws IOException {
+		return streamer.write(PAYLOAD, input, output);
+	}
+}
@@ -0,0 +1,94 @@
+package application.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.SplittableRandom;
+
+/**
+ * Creates reproducible test-images, so the benchmarks need no image-files. The content is a smooth
+ * gradient with added noise, which compresses about as well as a photograph.
+ */
+final class SyntheticImages {
+
+	private SyntheticImages() {
+	}
+
+
+
+	/**
+	 * Creates an image with an aspect-ratio of 4:3.
+	 *
+	 * @param megapixels	Size of the image in millions of pixels.
+	 * @param type			One of INT_ARGB, 3BYTE_BGR or BYTE_INDEXED.
+	 * @param seed			Seed of the noise.
+	 *
+	 * @return				The image.
+	 */
+	static BufferedImage create(int megapixels, String type, long seed) {
+		int width = (int) Math.round(Math.sqrt(megapixels * 1_000_000 * 4.0 / 3.0));
+		int height = megapixels * 1_000_000 / width;
+		BufferedImage image = new BufferedImage(width, height, imageType(type));
+		SplittableRandom random = new SplittableRandom(seed);
+
+		switch (image.getType()){
+			case BufferedImage.TYPE_INT_ARGB:
+				int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+				for (int y = 0, i = 0    ;    y < height    ;    y++){
+					for (int x = 0    ;    x < width    ;    x++, i++){
+						pixels[i] = 0xFF000000 | sample(x, width, random) << 16 | sample(y, height, random) << 8 | sample(x + y, width + height, random);
+					}
+				}
+				break;
+			case BufferedImage.TYPE_3BYTE_BGR:
+				byte[] bytes = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+				for (int y = 0, i = 0    ;    y < height    ;    y++){
+					for (int x = 0    ;    x < width    ;    x++){
+						bytes[i++] = (byte) sample(x + y, width + height, random);
+						bytes[i++] = (byte) sample(y, height, random);
+						bytes[i++] = (byte) sample(x, width, random);
+					}
+				}
+				break;
+			default:
+				byte[] indices = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+				for (int y = 0, i = 0    ;    y < height    ;    y++){
+					for (int x = 0    ;    x < width    ;    x++, i++){
+						indices[i] = (byte) sample(x + y, width + height, random);
+					}
+				}
+				break;
+		}
+
+		return image;
+	}
+
+
+	/**
+	 * Creates an independent copy of an image of the same type.
+	 *
+	 * @param image			The image to copy.
+	 *
+	 * @return				The copy.
+	 */
+	static BufferedImage copy(BufferedImage image) {
+		return new BufferedImage(image.getColorModel(), image.copyData(null), image.isAlphaPremultiplied(), null);
+	}
+
+
+
+	static int imageType(String type) {
+		switch (type){
+			case "INT_ARGB":		return BufferedImage.TYPE_INT_ARGB;
+			case "3BYTE_BGR":		return BufferedImage.TYPE_3BYTE_BGR;
+			case "BYTE_INDEXED":	return BufferedImage.TYPE_BYTE_INDEXED;
+			default:				throw new IllegalArgumentException("Unknown image-type " + type + ".");
+		}
+	}
+
+
+	private static int sample(int position, int range, SplittableRandom random) {
+		int value = (int) (255L * position / range) + random.nextInt(-8, 9);
+		return Math.max(0, Math.min(255, value));
+	}
+}
@@ -0,0 +1,96 @@
+package application.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import application.data.CompiledWatermark;
+import application.data.ReadWriteUtilities;
+import application.data.WatermarkCodec;
+import application.data.WatermarkResult;
+
+/**
+ * Throughput of the single watermark-operations on images in memory. Writing and erasing manipulate
+ * their image in place; both are idempotent, so the same image is used for every invocation.
+ * The palette of BYTE_INDEXED-images can't hold all written blue-values, so for them readWatermarked
+ * measures an unsuccessful search as well. Run with "-prof gc" to see the allocation-rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class WatermarkBenchmark {
+
+	private static final String		PAYLOAD		= "Benchmark-Watermark";
+
+
+	@Param({"1", "10", "50"})
+	public int				megapixels;
+
+	@Param({"INT_ARGB", "3BYTE_BGR", "BYTE_INDEXED"})
+	public String			imageType;
+
+
+	private WatermarkCodec		codec;
+	private CompiledWatermark	compiled;
+	private BufferedImage		unmarked;
+	private BufferedImage		marked;
+	private BufferedImage		target;
+
+
+
+	@Setup(Level.Trial)
+	public void createImages() {
+		codec = ReadWriteUtilities.getDefaultCodec();
+		compiled = codec.compile(PAYLOAD);
+		unmarked = SyntheticImages.create(megapixels, imageType, 1);
+		marked = SyntheticImages.copy(unmarked);
+		codec.write(PAYLOAD, marked);
+		target = SyntheticImages.copy(unmarked);
+	}
+
+
+
+	@Benchmark
+	public WatermarkResult write() {
+		return codec.write(PAYLOAD, target);
+	}
+
+
+	@Benchmark
+	public WatermarkResult writeCompiled() {
+		return codec.write(compiled, target);
+	}
+
+
+	@Benchmark
+	public WatermarkResult readWatermarked() {
+		return codec.read(marked);
+	}
+
+
+	@Benchmark
+	public WatermarkResult readUnwatermarked() {
+		return codec.read(unmarked);
+	}
+
+
+	@Benchmark
+	public WatermarkResult erase() {
+		return codec.erase(target);
+	}
+}
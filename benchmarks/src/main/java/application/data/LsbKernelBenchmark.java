@@ -0,0 +1,101 @@
+package application.data;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the LSB-kernels on a single row of pixels: the scalar kernel against the kernel
+ * LsbKernel.get() selects for the running JVM. The benchmark is placed in the package of the kernels,
+ * which are not public. Without the vector-profile and module jdk.incubator.vector both kernels are
+ * the same, which makes the gain of the vector-kernel visible by comparing the two runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LsbKernelBenchmark {
+
+	private static final String		PAYLOAD		= "Benchmark-Watermark";
+
+
+	@Param({"scalar", "selected"})
+	public String			kernelName;
+
+	@Param({"4096", "16384"})
+	public int				width;
+
+
+	private LsbKernel		kernel;
+	private int[]			pattern;
+	private int				start;
+	private int[]			packedRow;
+	private byte[]			interleavedRow;
+	private long[]			bits;
+
+
+
+	@Setup
+	public void createRows() {
+		kernel = kernelName.equals("scalar")  ?  new LsbKernel()  :  LsbKernel.get();
+
+		BitSequence sequence = new WatermarkCodec().createWatermarkBinarySequence(PAYLOAD);
+		pattern = sequence.unroll(sequence.length() + width);
+		start = sequence.length() / 3;
+
+		Random random = new Random(1);
+		packedRow = new int[width];
+		for (int i = 0    ;    i < width    ;    i++){
+			packedRow[i] = random.nextInt();
+		}
+		interleavedRow = new byte[width * 4];
+		random.nextBytes(interleavedRow);
+		bits = new long[(width + Long.SIZE - 1) / Long.SIZE];
+	}
+
+
+
+	@Benchmark
+	public int[] embedPackedInt() {
+		kernel.embed(packedRow, 0, width, pattern, start, 0);
+		return packedRow;
+	}
+
+
+	@Benchmark
+	public long[] extractPackedInt() {
+		for (int w = 0    ;    w < bits.length    ;    w++){
+			bits[w] = kernel.extract(packedRow, w * Long.SIZE, Math.min(Long.SIZE, width - w * Long.SIZE), 0);
+		}
+		return bits;
+	}
+
+
+	@Benchmark
+	public byte[] embedInterleaved() {
+		kernel.embed(interleavedRow, 1, 4, width, pattern, start);
+		return interleavedRow;
+	}
+
+
+	@Benchmark
+	public long[] extractInterleaved() {
+		for (int w = 0    ;    w < bits.length    ;    w++){
+			bits[w] = kernel.extract(interleavedRow, 1 + w * Long.SIZE * 4, 4, Math.min(Long.SIZE, width - w * Long.SIZE));
+		}
+		return bits;
+	}
+}
@@ -0,0 +1,134 @@
+package application.data;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Listener emitting every OperationRecord as an event of the JDK Flight Recorder (JDK 11 or later),
+ * so loading, writing, reading, erasing and saving show up in recordings next to GC, allocation
+ * and I/O of the JVM.
+ *
+ * The event begins when the operation starts and ends when it finishes, so it covers the operation on
+ * the time-line of the recording. Begun events are kept per thread until their operation finishes,
+ * matched by the start of the operation; events of operations that failed are dropped once an enclosing
+ * operation finishes, or once more than MAX_PENDING events are pending.
+ *
+ * This class is not part of the regular build; it is compiled from src-jfr and registered by
+ * Instrumentation.enableFlightRecorder() if present.
+ */
+final class FlightRecorderListener implements OperationListener {
+
+	private static final int								MAX_PENDING		= 16;
+
+	private static final ThreadLocal<Deque<PendingEvent>>	PENDING			= ThreadLocal.withInitial(ArrayDeque::new);
+
+
+
+	@Override
+	public void operationStarted(long start) {
+		OperationEvent event = new OperationEvent();
+		if (! event.isEnabled())
+			return;
+
+		Deque<PendingEvent> pending = PENDING.get();
+		if (pending.size() == MAX_PENDING)
+			pending.removeLast();
+		event.begin();
+		pending.push(new PendingEvent(start, event));
+	}
+
+
+	@Override
+	public void operationFinished(OperationRecord record) {
+		OperationEvent event = takePending(record.getStartNanos());
+		if (event == null)
+			return;
+
+		event.end();
+		event.operation 		= record.getType().name();
+		event.pixels 			= record.getPixels();
+		event.bytes 			= record.getBytes();
+		event.rowsScanned 		= record.getRowsScanned();
+		event.columnsScanned 	= record.getColumnsScanned();
+		event.hit 				= record.isHit();
+		event.direction 		= (record.getReadDirection() == null)  ?  null  :  record.getReadDirection().name();
+		event.commit();
+	}
+
+
+	/**
+	 * Removes the event begun for the operation of the given start, and all events begun later
+	 * (i.e. of nested operations that failed).
+	 *
+	 * @return				The event, or NULL if none has been begun for the operation.
+	 */
+	private static OperationEvent takePending(long start) {
+		Deque<PendingEvent> pending = PENDING.get();
+		boolean found = false;
+		for (Iterator<PendingEvent> i = pending.iterator()    ;    i.hasNext()    &&    ! found    ;    ){
+			found = i.next().start == start;
+		}
+		if (! found)
+			return null;
+
+		PendingEvent taken;
+		do {
+			taken = pending.pop();
+		} while (taken.start != start);
+		return taken.event;
+	}
+
+
+
+	private static class PendingEvent {
+
+		final long				start;
+		final OperationEvent	event;
+
+		PendingEvent(long start, OperationEvent event) {
+			this.start 	= start;
+			this.event 	= event;
+		}
+	}
+
+
+
+	@Name("application.watermarker.Operation")
+	@Label("Watermarker Operation")
+	@Category("Watermarker")
+	@Description("Loading, writing, reading, erasing or saving an image.")
+	@StackTrace(false)
+	static class OperationEvent extends Event {
+
+		@Label("Operation")
+		String		operation;
+
+		@Label("Pixels")
+		long		pixels;
+
+		@Label("Bytes")
+		@DataAmount(DataAmount.BYTES)
+		long		bytes;
+
+		@Label("Rows Scanned")
+		int			rowsScanned;
+
+		@Label("Columns Scanned")
+		int			columnsScanned;
+
+		@Label("Watermark Found")
+		boolean		hit;
+
+		@Label("Read Direction")
+		String		direction;
+	}
+}
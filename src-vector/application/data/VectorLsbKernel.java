@@ -0,0 +1,125 @@
+package application.data;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * LSB-kernel using the Vector API of JDK 17 or later (module jdk.incubator.vector).
+ * Packed-int rows are processed as many pixels per instruction as the preferred vector-shape holds.
+ * Interleaved rows with four bytes per pixel are loaded as bytes and reinterpreted as integers, so the
+ * blue-byte of every pixel becomes the lowest byte of an integer-lane. Other pixel-strides, and the
+ * pixels left over at the end of a row, are handled by the scalar kernel.
+ *
+ * This class is not part of the regular build; it is compiled from src-vector and picked up by
+ * LsbKernel.get() if present.
+ */
+final class VectorLsbKernel extends LsbKernel {
+
+	private static final VectorSpecies<Integer>		INTS		= IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Byte>		BYTES		= ByteVector.SPECIES_PREFERRED;
+	private static final int						WORD_BYTES	= Integer.BYTES;
+
+	/** Lane i holding i, to move the bit of every lane to its own position before reducing the lanes. */
+	private static final IntVector					LANE_INDEX	= IntVector.zero(INTS).addIndex(1);
+
+
+
+	/**
+	 * Constructor. Refuses vector-shapes too narrow to gain anything over the scalar kernel.
+	 */
+	VectorLsbKernel() {
+		if (INTS.length() < 4)
+			throw new UnsupportedOperationException("No SIMD-support for " + INTS + ".");
+	}
+
+
+
+	@Override
+	String getName() {
+		return "vector-" + INTS.vectorBitSize();
+	}
+
+
+	@Override
+	void embed(int[] data, int offset, int count, int[] bits, int bitOffset, int shift) {
+		int clear = ~(1 << shift);
+		int bound = INTS.loopBound(count);
+
+		for (int i = 0    ;    i < bound    ;    i += INTS.length()){
+			IntVector pixels = IntVector.fromArray(INTS, data, offset + i);
+			IntVector pattern = IntVector.fromArray(INTS, bits, bitOffset + i);
+			pixels.and(clear).or(pattern.lanewise(VectorOperators.LSHL, shift)).intoArray(data, offset + i);
+		}
+		super.embed(data, offset + bound, count - bound, bits, bitOffset + bound, shift);
+	}
+
+
+	@Override
+	long extract(int[] data, int offset, int count, int shift) {
+		int bound = INTS.loopBound(count);
+		long word = 0;
+
+		for (int i = 0    ;    i < bound    ;    i += INTS.length()){
+			IntVector pixels = IntVector.fromArray(INTS, data, offset + i);
+			word |= (long) gatherLanes(pixels.lanewise(VectorOperators.LSHR, shift)) << i;
+		}
+		return word | (super.extract(data, offset + bound, count - bound, shift) << bound);
+	}
+
+
+	/**
+	 * A vector starting at the blue-byte of a pixel reaches into the following pixel, so the last pixel of
+	 * a row is always left to the scalar kernel; the bytes beyond the blue-byte are written back unchanged.
+	 */
+	@Override
+	void embed(byte[] data, int offset, int pixelStride, int count, int[] bits, int bitOffset) {
+		if (pixelStride != WORD_BYTES){
+			super.embed(data, offset, pixelStride, count, bits, bitOffset);
+			return;
+		}
+
+		int lanes = BYTES.length() / WORD_BYTES;
+		int bound = Math.max(0, count - 1) / lanes * lanes;
+
+		for (int i = 0    ;    i < bound    ;    i += lanes){
+			int index = offset + i * WORD_BYTES;
+			IntVector pixels = ByteVector.fromArray(BYTES, data, index).reinterpretAsInts();
+			IntVector pattern = IntVector.fromArray(INTS, bits, bitOffset + i);
+			pixels.and(~1).or(pattern).reinterpretAsBytes().intoArray(data, index);
+		}
+		super.embed(data, offset + bound * WORD_BYTES, pixelStride, count - bound, bits, bitOffset + bound);
+	}
+
+
+	@Override
+	long extract(byte[] data, int offset, int pixelStride, int count) {
+		if (pixelStride != WORD_BYTES)
+			return super.extract(data, offset, pixelStride, count);
+
+		int lanes = BYTES.length() / WORD_BYTES;
+		int bound = Math.max(0, count - 1) / lanes * lanes;
+		long word = 0;
+
+		for (int i = 0    ;    i < bound    ;    i += lanes){
+			IntVector pixels = ByteVector.fromArray(BYTES, data, offset + i * WORD_BYTES).reinterpretAsInts();
+			word |= (long) gatherLanes(pixels) << i;
+		}
+		return word | (super.extract(data, offset + bound * WORD_BYTES, pixelStride, count - bound) << bound);
+	}
+
+
+
+	/**
+	 * Packs the lowest bits of all lanes into an integer, lane i giving bit i. A vector has at most
+	 * 16 integer-lanes, so the result fits into the lower half of the integer.
+	 *
+	 * @param lanes		The vector holding the bits in the lowest bit of each lane.
+	 *
+	 * @return			The packed bits.
+	 */
+	private static int gatherLanes(IntVector lanes) {
+		return lanes.and(1).lanewise(VectorOperators.LSHL, LANE_INDEX).reduceLanes(VectorOperators.OR);
+	}
+}
@@ -2,6 +2,7 @@ package application;
 	
 import java.io.File;
 
+import application.batch.BatchMain;
 import application.data.WorkingImage;
 import application.gui.PrimaryWindow;
 import javafx.application.Application;
@@ -17,6 +18,8 @@ public class Main extends Application {
 	
 	
 	public static void main(String[] args) {
+		if (args.length > 0    &&    BatchMain.isBatchCommand(args[0]))
+			System.exit(BatchMain.run(args));
 		launch(args);
 	}
 	
@@ -44,4 +47,9 @@ public class Main extends Application {
 	public static void setActiveImage(File file) {
 		activeImage = new WorkingImage(file);
 	}
+	
+	
+	public static void setActiveImage(WorkingImage image) {
+		activeImage = image;
+	}
 }
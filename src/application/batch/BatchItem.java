@@ -0,0 +1,40 @@
+package application.batch;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import application.data.WatermarkResult;
+
+/**
+ * A single image on its way through the stages of a batch-run: decoding, applying the operation,
+ * and encoding. Each stage fills in its part; a failure ends the processing of the item.
+ */
+class BatchItem {
+
+	/** Marks the end of the input of a pipeline-stage. */
+	static final BatchItem    END     = new BatchItem(null, null);
+
+
+	final File                file;
+	final String              relativeName;
+	final long                start;
+
+	BufferedImage             image;
+	WatermarkResult           result;
+	File                      output;
+	String                    failure;
+
+
+
+	BatchItem(File file, String relativeName) {
+		this.file 			= file;
+		this.relativeName 	= relativeName;
+		this.start 			= System.nanoTime();
+	}
+
+
+
+	boolean isFailed() {
+		return failure != null;
+	}
+}
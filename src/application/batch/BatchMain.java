@@ -0,0 +1,67 @@
+package application.batch;
+
+import java.io.IOException;
+
+/**
+ * Entry point for headless batch-runs. Performs write-, read- or erase-operations on whole
+ * directories or lists of image-files, see BatchOptions.USAGE.
+ */
+public class BatchMain {
+
+	public static final int     EXIT_SUCCESS    = 0;
+	public static final int     EXIT_FAILURES   = 1;
+	public static final int     EXIT_USAGE      = 2;
+
+
+
+	private BatchMain(){}
+
+
+
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+
+
+	/**
+	 * Indicates whether a command-line argument requests a batch-run instead of the user-interface.
+	 *
+	 * @param argument		The first command-line argument.
+	 *
+	 * @return				True for the commands of BatchOperation.
+	 */
+	public static boolean isBatchCommand(String argument) {
+		return BatchOperation.fromCommand(argument) != null;
+	}
+
+
+	/**
+	 * Parses the arguments and performs the batch-run.
+	 *
+	 * @param args		The command-line arguments, starting with the command.
+	 *
+	 * @return			The exit-code: 0 on success, 1 if images failed, 2 for invalid arguments.
+	 */
+	public static int run(String[] args) {
+		BatchOptions options;
+		try {
+			options = BatchOptions.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.print(BatchOptions.USAGE);
+			return EXIT_USAGE;
+		}
+
+		try {
+			int failures = new BatchProcessor(options).run();
+			return (failures == 0)  ?  EXIT_SUCCESS  :  EXIT_FAILURES;
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			return EXIT_FAILURES;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return EXIT_FAILURES;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package application.batch;
+
+/**
+ * The operations a batch-run can perform on each image.
+ */
+public enum BatchOperation {
+	WRITE,
+	READ,
+	ERASE;
+
+
+
+	/**
+	 * Returns the operation for a command-line argument.
+	 *
+	 * @param name		The command, e.g. "write".
+	 *
+	 * @return			The operation or NULL, if the command is unknown.
+	 */
+	public static BatchOperation fromCommand(String name) {
+		for (BatchOperation operation : values()){
+			if (operation.name().equalsIgnoreCase(name))
+				return operation;
+		}
+		return null;
+	}
+
+
+	/**
+	 * Indicates whether the operation manipulates the image and therefore has to save it.
+	 *
+	 * @return			True for WRITE and ERASE.
+	 */
+	public boolean isModifying() {
+		return this != READ;
+	}
+}
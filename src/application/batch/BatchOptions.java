@@ -0,0 +1,282 @@
+package application.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import application.data.ParallelPngWriter;
+import application.data.PngFilter;
+import application.data.ReadWriteUtilities;
+import application.data.RowSchedule;
+import application.data.WatermarkCodec;
+import application.data.WatermarkLayout;
+
+/**
+ * The configuration of a batch-run, parsed from the command-line.
+ */
+public class BatchOptions {
+
+	public static final String     USAGE =
+			"Usage: watermarker <write|read|erase> [options] <file|directory>...\n"
+		+	"  --watermark <text>    Payload to write (write only).\n"
+		+	"  --row-aligned         Restart the watermark in every row, so reading needs a few hundred pixels (write only).\n"
+		+	"  --row-stride <n>      Write, read and erase only every n-th row (default: 1).\n"
+		+	"  --row-key <number>    Select the rows of --row-stride pseudo-randomly by this key.\n"
+		+	"  --output <directory>  Directory for manipulated images (default: next to the original).\n"
+		+	"  --list <file>         Text-file with one image-path per line.\n"
+		+	"  --recursive           Include images in sub-directories.\n"
+		+	"  --threads <n>         Number of worker-threads (default: number of processors).\n"
+		+	"  --in-flight <n>       Maximum number of images held in memory (default: 2 * threads).\n"
+		+	"  --manifest <file>     Result-manifest; *.json/*.jsonl for JSON lines, CSV otherwise.\n"
+		+	"  --pipeline            Decode, watermark and encode on separate executors.\n"
+		+	"  --decoders <n>        Decoding threads of the pipeline (implies --pipeline).\n"
+		+	"  --embedders <n>       Watermarking threads of the pipeline (implies --pipeline).\n"
+		+	"  --encoders <n>        Encoding threads of the pipeline (implies --pipeline).\n"
+		+	"  --queue-depth <n>     Capacity of each queue between the pipeline-stages (default: threads).\n"
+		+	"  --streaming           Write/erase 8-bit RGB(A) PNG-files band by band, for images larger than the heap.\n"
+		+	"  --mapped-bmp          Manipulate uncompressed BMP-files in place via memory-mapping, keeping BMP.\n"
+		+	"  --probe               Read: search the leading rows first, decode the whole image only on a miss.\n"
+		+	"  --cache <file>        Read: remember results in an index-file, skipping files checked before.\n"
+		+	"  --min-confidence <p>  Read: decode by majority-vote over all copies, until this confidence (0 to 1).\n"
+		+	"  --png-level <0-9>     Compression-level of written PNG-files (default: 6).\n"
+		+	"  --png-filter <name>   PNG-filter: none, sub, up, average, paeth or adaptive (default).\n"
+		+	"  --metrics             Print timings, pixels and bytes of every kind of operation at the end.\n"
+		+	"  --quiet               No progress-output.\n";
+
+
+	private BatchOperation   operation;
+	private String           watermark;
+	private WatermarkLayout  layout           = WatermarkLayout.CYCLIC;
+	private int              rowStride        = 1;
+	private Long             rowKey;
+	private RowSchedule      schedule;
+	private File             outputDirectory;
+	private File             manifest;
+	private boolean          recursive;
+	private boolean          quiet;
+	private int              threads          = Runtime.getRuntime().availableProcessors();
+	private int              inFlight         = -1;
+	private boolean          pipelined;
+	private boolean          streaming;
+	private boolean          mappedBmp;
+	private boolean          probing;
+	private File             cacheFile;
+	private Double           minConfidence;
+	private boolean          metrics;
+	private int              decoders         = -1;
+	private int              embedders        = -1;
+	private int              encoders         = -1;
+	private int              queueDepth       = -1;
+	private int              pngLevel         = ParallelPngWriter.DEFAULT_COMPRESSION_LEVEL;
+	private PngFilter        pngFilter        = ParallelPngWriter.DEFAULT_FILTER;
+	private List<File>       inputs           = new ArrayList<>();
+
+
+
+	private BatchOptions() {
+	}
+
+
+
+	/**
+	 * Parses the command-line arguments of a batch-run.
+	 *
+	 * @param args		The command-line arguments, starting with the command.
+	 *
+	 * @return			The options.
+	 *
+	 * @throws IllegalArgumentException		Thrown for incomplete or invalid arguments.
+	 */
+	public static BatchOptions parse(String[] args) {
+		BatchOptions options = new BatchOptions();
+		if (args.length == 0    ||    (options.operation = BatchOperation.fromCommand(args[0])) == null)
+			throw new IllegalArgumentException("Unknown command.");
+
+		for (int i = 1    ;    i < args.length    ;    i++){
+			switch (args[i]){
+				case "--watermark":		options.watermark = value(args, ++i);						break;
+				case "--output":		options.outputDirectory = new File(value(args, ++i));		break;
+				case "--list":			options.inputs.addAll(readList(new File(value(args, ++i))));	break;
+				case "--recursive":		options.recursive = true;									break;
+				case "--threads":		options.threads = positive(args, ++i);						break;
+				case "--in-flight":		options.inFlight = positive(args, ++i);						break;
+				case "--manifest":		options.manifest = new File(value(args, ++i));				break;
+				case "--quiet":			options.quiet = true;										break;
+				case "--pipeline":		options.pipelined = true;									break;
+				case "--streaming":		options.streaming = true;									break;
+				case "--mapped-bmp":	options.mappedBmp = true;									break;
+				case "--row-aligned":	options.layout = WatermarkLayout.ROW_ALIGNED;					break;
+				case "--row-stride":	options.rowStride = positive(args, ++i);					break;
+				case "--row-key":		options.rowKey = number(args, ++i);							break;
+				case "--probe":			options.probing = true;										break;
+				case "--cache":			options.cacheFile = new File(value(args, ++i));				break;
+				case "--min-confidence":	options.minConfidence = confidence(args, ++i);			break;
+				case "--metrics":		options.metrics = true;										break;
+				case "--decoders":		options.decoders = positive(args, ++i);						break;
+				case "--embedders":		options.embedders = positive(args, ++i);					break;
+				case "--encoders":		options.encoders = positive(args, ++i);						break;
+				case "--queue-depth":	options.queueDepth = positive(args, ++i);					break;
+				case "--png-level":		options.pngLevel = pngLevel(args, ++i);						break;
+				case "--png-filter":	options.pngFilter = pngFilter(args, ++i);					break;
+				default:
+					if (args[i].startsWith("--"))
+						throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+					options.inputs.add(new File(args[i]));
+			}
+		}
+
+		options.validate();
+		return options;
+	}
+
+
+
+	public BatchOperation	getOperation()					{	return operation;						}
+	public String			getWatermark()					{	return watermark;						}
+	public File				getOutputDirectory()			{	return outputDirectory;					}
+	public File				getManifest()					{	return manifest;						}
+	public boolean			isRecursive()					{	return recursive;						}
+	public boolean			isQuiet()						{	return quiet;							}
+	public int				getThreads()					{	return threads;							}
+	public int				getInFlight()					{	return inFlight;						}
+	public boolean			isPipelined()					{	return pipelined;						}
+	public boolean			isStreaming()					{	return streaming;						}
+	public boolean			isMappedBmp()					{	return mappedBmp;						}
+	public WatermarkLayout	getLayout()						{	return layout;							}
+	public RowSchedule		getSchedule()					{	return schedule;						}
+	public boolean			isProbing()						{	return probing;							}
+	public File				getCacheFile()					{	return cacheFile;						}
+	public Double			getMinConfidence()				{	return minConfidence;					}
+	public boolean			isMetrics()						{	return metrics;							}
+	public int				getDecoders()					{	return decoders;						}
+	public int				getEmbedders()					{	return embedders;						}
+	public int				getEncoders()					{	return encoders;						}
+	public int				getQueueDepth()					{	return queueDepth;						}
+	public int				getPngLevel()					{	return pngLevel;						}
+	public PngFilter		getPngFilter()					{	return pngFilter;						}
+	public List<File>		getInputs()						{	return Collections.unmodifiableList(inputs);	}
+
+
+
+	private void validate() {
+		if (inputs.isEmpty())
+			throw new IllegalArgumentException("No input files.");
+
+		if (operation == BatchOperation.WRITE){
+			if (watermark == null    ||    watermark.equals(""))
+				throw new IllegalArgumentException("Option --watermark is required for write.");
+			if (WatermarkCodec.getPayloadSize(watermark) > ReadWriteUtilities.INITIAL_WATERMARK_MAX_LENGTH)
+				throw new IllegalArgumentException("The watermark must not exceed "
+						+ ReadWriteUtilities.INITIAL_WATERMARK_MAX_LENGTH + " bytes in UTF-8.");
+		}
+
+		if (rowKey != null    &&    rowStride == 1)
+			throw new IllegalArgumentException("Option --row-key requires --row-stride.");
+		schedule = (rowKey == null)  ?  RowSchedule.every(rowStride)  :  RowSchedule.keyed(rowKey, rowStride);
+
+		if (inFlight < 0)
+			inFlight = 2 * threads;
+		if (inFlight < threads)
+			throw new IllegalArgumentException("Option --in-flight must not be smaller than --threads.");
+
+		pipelined |= decoders > 0    ||    embedders > 0    ||    encoders > 0    ||    queueDepth > 0;
+		if (streaming    &&    pipelined)
+			throw new IllegalArgumentException("Option --streaming can't be combined with the pipeline.");
+		if (mappedBmp    &&    pipelined)
+			throw new IllegalArgumentException("Option --mapped-bmp can't be combined with the pipeline.");
+		if (probing    &&    pipelined)
+			throw new IllegalArgumentException("Option --probe can't be combined with the pipeline.");
+		if (cacheFile != null    &&    (pipelined    ||    operation != BatchOperation.READ))
+			throw new IllegalArgumentException("Option --cache is only supported for read, without the pipeline.");
+		if (minConfidence != null    &&    (operation != BatchOperation.READ    ||    mappedBmp    ||    probing))
+			throw new IllegalArgumentException("Option --min-confidence is only supported for read, "
+					+ "without --mapped-bmp and --probe.");
+		if (decoders < 0)
+			decoders = Math.max(1, threads / 3);
+		if (embedders < 0)
+			embedders = 1;
+		if (encoders < 0)
+			encoders = Math.max(1, threads - decoders - embedders);
+		if (queueDepth < 0)
+			queueDepth = threads;
+	}
+
+
+	private static String value(String[] args, int index) {
+		if (index >= args.length)
+			throw new IllegalArgumentException("Missing value for " + args[index - 1] + ".");
+		return args[index];
+	}
+
+
+	private static long number(String[] args, int index) {
+		try {
+			return Long.parseLong(value(args, index));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Option " + args[index - 1] + " requires a number.");
+		}
+	}
+
+
+	private static int positive(String[] args, int index) {
+		try {
+			int number = Integer.parseInt(value(args, index));
+			if (number > 0)
+				return number;
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Option " + args[index - 1] + " requires a positive number.");
+	}
+
+
+	private static double confidence(String[] args, int index) {
+		try {
+			double confidence = Double.parseDouble(value(args, index));
+			if (confidence >= 0    &&    confidence <= 1)
+				return confidence;
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Option --min-confidence requires a number from 0 to 1.");
+	}
+
+
+	private static int pngLevel(String[] args, int index) {
+		try {
+			int level = Integer.parseInt(value(args, index));
+			if (level >= 0    &&    level <= 9)
+				return level;
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Option --png-level requires a number from 0 to 9.");
+	}
+
+
+	private static PngFilter pngFilter(String[] args, int index) {
+		String name = value(args, index);
+		try {
+			return PngFilter.valueOf(name.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown PNG-filter " + name + ".");
+		}
+	}
+
+
+	private static List<File> readList(File list) {
+		try {
+			List<File> files = new ArrayList<>();
+			for (String line : Files.readAllLines(list.toPath())){
+				if (! line.trim().equals(""))
+					files.add(new File(line.trim()));
+			}
+			return files;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("List-file " + list + " can't be read.");
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package application.batch;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the stages of a batch-run on separately sized executors: decoding (inflating the image-file),
+ * applying the watermark-operation, and encoding the manipulated image. The stages are connected by
+ * bounded queues. A full queue blocks the preceding stage, so a slow stage throttles the whole
+ * pipeline, and the number of decoded images in memory is bounded by the queue-depths and threads,
+ * regardless of the size of the batch.
+ */
+class BatchPipeline {
+
+	/**
+	 * The work a pipeline-stage performs on a single item.
+	 */
+	private interface Stage {
+		void process(BatchItem item) throws InterruptedException;
+	}
+
+
+	private final BatchProcessor    processor;
+	private final BatchOptions      options;
+
+
+
+	BatchPipeline(BatchProcessor processor, BatchOptions options) {
+		this.processor 	= processor;
+		this.options 	= options;
+	}
+
+
+
+	/**
+	 * Feeds all image-files into the pipeline and waits until every stage has finished.
+	 *
+	 * @param files			The image-files mapped to their relative paths.
+	 * @param sink			Receives the result of every item, from any of the stage-threads.
+	 *
+	 * @throws InterruptedException		Thrown if the run is interrupted while waiting for the stages.
+	 */
+	void run(Map<File, String> files, Consumer<BatchResult> sink) throws InterruptedException {
+		BlockingQueue<BatchItem> toDecode = new ArrayBlockingQueue<>(options.getQueueDepth());
+		BlockingQueue<BatchItem> toApply  = new ArrayBlockingQueue<>(options.getQueueDepth());
+		BlockingQueue<BatchItem> toEncode = new ArrayBlockingQueue<>(options.getQueueDepth());
+
+		ExecutorService decoders  = Executors.newFixedThreadPool(options.getDecoders(), threadFactory("decode"));
+		ExecutorService embedders = Executors.newFixedThreadPool(options.getEmbedders(), threadFactory("embed"));
+		ExecutorService encoders  = Executors.newFixedThreadPool(options.getEncoders(), threadFactory("encode"));
+
+		startStage(decoders, options.getDecoders(), toDecode, sink, item -> {
+			processor.decode(item);
+			if (item.isFailed())
+				sink.accept(processor.toResult(item));
+			else
+				toApply.put(item);
+		});
+		startStage(embedders, options.getEmbedders(), toApply, sink, item -> {
+			processor.applyOperation(item);
+			if (item.isFailed()    ||    ! options.getOperation().isModifying())
+				sink.accept(processor.toResult(item));
+			else
+				toEncode.put(item);
+		});
+		startStage(encoders, options.getEncoders(), toEncode, sink, item -> {
+			processor.encode(item);
+			sink.accept(processor.toResult(item));
+		});
+
+		try {
+			for (Map.Entry<File, String> entry : files.entrySet()){
+				toDecode.put(new BatchItem(entry.getKey(), entry.getValue()));
+			}
+			endStage(decoders, options.getDecoders(), toDecode);
+			endStage(embedders, options.getEmbedders(), toApply);
+			endStage(encoders, options.getEncoders(), toEncode);
+		} finally {
+			decoders.shutdownNow();
+			embedders.shutdownNow();
+			encoders.shutdownNow();
+		}
+	}
+
+
+
+	/**
+	 * Starts the workers of a stage. Each worker takes items from the input-queue until it receives
+	 * the end-marker. Unexpected exceptions fail the item instead of the worker.
+	 *
+	 * @param executor		The executor of the stage.
+	 * @param workers		Number of workers.
+	 * @param input			The input-queue of the stage.
+	 * @param sink			Receives the results of failed items.
+	 * @param stage			The work to perform on each item.
+	 */
+	private void startStage(ExecutorService executor, int workers, BlockingQueue<BatchItem> input,
+			Consumer<BatchResult> sink, Stage stage) {
+		for (int i = 0    ;    i < workers    ;    i++){
+			executor.execute(() -> {
+				try {
+					for (BatchItem item = input.take()    ;    item != BatchItem.END    ;    item = input.take()){
+						try {
+							stage.process(item);
+						} catch (RuntimeException e) {
+							item.image = null;
+							item.failure = e.toString();
+							sink.accept(processor.toResult(item));
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+	}
+
+
+	/**
+	 * Signals the end of the input to all workers of a stage and waits until they have finished.
+	 * Afterwards the stage won't put any further items into the next queue.
+	 *
+	 * @param executor		The executor of the stage.
+	 * @param workers		Number of workers.
+	 * @param input			The input-queue of the stage.
+	 *
+	 * @throws InterruptedException		Thrown if interrupted while waiting.
+	 */
+	private static void endStage(ExecutorService executor, int workers, BlockingQueue<BatchItem> input)
+			throws InterruptedException {
+		for (int i = 0    ;    i < workers    ;    i++){
+			input.put(BatchItem.END);
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+
+	private static ThreadFactory threadFactory(String stage) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, "watermarker-" + stage + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
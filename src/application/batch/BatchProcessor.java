@@ -0,0 +1,579 @@
+package application.batch;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import application.data.CompiledWatermark;
+import application.data.DetectionCache;
+import application.data.Instrumentation;
+import application.data.MappedBmpWatermarker;
+import application.data.OperationMetrics;
+import application.data.OperationType;
+import application.data.ParallelPngWriter;
+import application.data.ReadWriteUtilities;
+import application.data.StreamingWatermarker;
+import application.data.WatermarkCodec;
+import application.data.WatermarkProbe;
+import application.data.WatermarkResult;
+
+/**
+ * Performs a batch-operation on a set of image-files without any user-interface.
+ * By default the images are processed by a pool of worker-threads. The number of images submitted but
+ * not yet finished is bounded, which caps the number of decoded images held in memory at any time.
+ * Alternatively a BatchPipeline runs decoding, watermarking and encoding on separate executors.
+ * Since the images are processed in parallel, each one is watermarked by a sequential codec.
+ * Every result is reported on the progress-output and appended to the manifest.
+ */
+public class BatchProcessor {
+
+	private static final String         PNG_EXTENSION   = ".png";
+	private static final String         BMP_EXTENSION   = ".bmp";
+
+
+	private final BatchOptions          options;
+	private final WatermarkCodec        codec;
+	private final CompiledWatermark     watermark;
+	private final ParallelPngWriter     pngWriter;
+	private final StreamingWatermarker  streamer;
+	private final MappedBmpWatermarker  bmpMapper;
+	private final WatermarkProbe        probe;
+	private final DetectionCache        cache;
+	private final String                readConfiguration;
+	private final OperationMetrics      metrics;
+
+	private final AtomicInteger         processed       = new AtomicInteger();
+	private final AtomicInteger         failed          = new AtomicInteger();
+	private final AtomicInteger         watermarked     = new AtomicInteger();
+
+	private Map<File, File>             outputFiles     = Collections.emptyMap();
+
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param options		The configuration of the batch-run.
+	 */
+	public BatchProcessor(BatchOptions options) {
+		this.options 	= options;
+		this.codec 		= new WatermarkCodec(ReadWriteUtilities.WATERMARK_INDICATOR, ReadWriteUtilities.STEPSIZE, null,
+								options.getLayout(), options.getSchedule());
+		this.watermark 	= (options.getOperation() == BatchOperation.WRITE)  ?  codec.compile(options.getWatermark())  :  null;
+		this.pngWriter 	= new ParallelPngWriter(options.getPngLevel(), options.getPngFilter(), ForkJoinPool.commonPool());
+		this.streamer 	= new StreamingWatermarker(codec, pngWriter, StreamingWatermarker.DEFAULT_BAND_PIXELS);
+		this.bmpMapper 	= new MappedBmpWatermarker(codec);
+		this.probe 		= new WatermarkProbe(codec, WatermarkProbe.DEFAULT_PROBE_ROWS);
+		this.cache 		= (options.getCacheFile() == null)
+							?  null  :  new DetectionCache(DetectionCache.DEFAULT_MAX_ENTRIES, options.getCacheFile());
+		this.metrics 	= options.isMetrics()  ?  new OperationMetrics()  :  null;
+		this.readConfiguration = codec.getFingerprint()
+							+ ((options.getMinConfidence() == null)  ?  ""  :  ";vote=" + options.getMinConfidence());
+	}
+
+
+
+	/**
+	 * Collects all image-files, processes them and writes the manifest.
+	 *
+	 * @return						Number of images that failed.
+	 *
+	 * @throws IOException			Thrown if an input-directory or the manifest can't be accessed.
+	 * @throws InterruptedException	Thrown if the run is interrupted while waiting for the workers.
+	 */
+	public int run() throws IOException, InterruptedException {
+		Map<File, String> files = collectImageFiles();
+		if (options.getOperation().isModifying())
+			outputFiles = assignOutputFiles(files);
+		int total = files.size();
+		long start = System.nanoTime();
+
+		ManifestWriter manifest = (options.getManifest() == null)  ?  null  :  new ManifestWriter(options.getManifest());
+		if (metrics != null)
+			Instrumentation.addListener(metrics);
+		try {
+			if (options.isPipelined())
+				new BatchPipeline(this, options).run(files, result -> report(result, total, manifest));
+			else
+				runOnWorkerPool(files, total, manifest);
+		} finally {
+			if (manifest != null)
+				manifest.close();
+			if (cache != null)
+				cache.save();
+			if (metrics != null)
+				Instrumentation.removeListener(metrics);
+		}
+
+		if (! options.isQuiet()){
+			System.err.printf("%d images processed in %.1f s, %d watermarked, %d failed.%n",
+					processed.get(), (System.nanoTime() - start) / 1e9, watermarked.get(), failed.get());
+			if (cache != null)
+				System.err.printf("Cache: %d hits, %d misses.%n", cache.getHits(), cache.getMisses());
+		}
+		if (metrics != null)
+			System.err.print(metrics);
+		return failed.get();
+	}
+
+
+
+	/**
+	 * Processes the images on a pool of worker-threads, each of which performs all stages for one image.
+	 * Submitting blocks while the maximum number of images is in flight.
+	 *
+	 * @param files			The image-files mapped to their relative paths.
+	 * @param total			Total number of images of the run.
+	 * @param manifest		The manifest or NULL.
+	 *
+	 * @throws InterruptedException	Thrown if the run is interrupted while waiting for the workers.
+	 */
+	private void runOnWorkerPool(Map<File, String> files, int total, ManifestWriter manifest) throws InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+		Semaphore slots = new Semaphore(options.getInFlight());
+
+		try {
+			for (Map.Entry<File, String> entry : files.entrySet()){
+				slots.acquire();
+				pool.execute(() -> {
+					try {
+						report(process(entry.getKey(), entry.getValue()), total, manifest);
+					} finally {
+						slots.release();
+					}
+				});
+			}
+			slots.acquire(options.getInFlight());
+		} finally {
+			pool.shutdown();
+			pool.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+
+	/**
+	 * Performs the configured operation on a single image-file, running all stages in the calling thread.
+	 *
+	 * @param file				The image-file.
+	 * @param relativeName		Path of the file relative to the input-directory it was found in.
+	 *
+	 * @return					The result; exceptions are reported as FAILED.
+	 */
+	BatchResult process(File file, String relativeName) {
+		BatchItem item = new BatchItem(file, relativeName);
+		if (cache != null){
+			readCached(item);
+			return toResult(item);
+		}
+		if (options.isMappedBmp()    &&    MappedBmpWatermarker.isSupported(file)){
+			map(item);
+			return toResult(item);
+		}
+		if (options.isStreaming()    &&    options.getOperation().isModifying()){
+			stream(item);
+			return toResult(item);
+		}
+		if (options.isProbing()    &&    options.getOperation() == BatchOperation.READ){
+			probe(item);
+			return toResult(item);
+		}
+
+		decode(item);
+		if (! item.isFailed())
+			applyOperation(item);
+		if (! item.isFailed()    &&    options.getOperation().isModifying())
+			encode(item);
+		return toResult(item);
+	}
+
+
+	/**
+	 * Decoding stage: reads the image from its file.
+	 *
+	 * @param item		The item to decode.
+	 */
+	void decode(BatchItem item) {
+		try {
+			long start = Instrumentation.start();
+			item.image = ImageIO.read(item.file);
+			if (item.image == null)
+				item.failure = "Unsupported image-format.";
+			else
+				Instrumentation.finish(OperationType.LOAD, start, pixelsOf(item.image), item.file.length());
+		} catch (IOException | RuntimeException e) {
+			item.failure = e.toString();
+		}
+	}
+
+
+	/**
+	 * Watermarking stage: writes, reads or erases the watermark of the decoded image.
+	 *
+	 * @param item		The decoded item.
+	 */
+	void applyOperation(BatchItem item) {
+		BatchOperation operation = options.getOperation();
+		switch (operation){
+			case WRITE:		item.result = codec.write(watermark, item.image);		break;
+			case ERASE:		item.result = codec.erase(item.image);								break;
+			default:		item.result = read(item.image);										break;
+		}
+
+		if (item.result == null)
+			item.failure = operation.name().toLowerCase() + "-operation failed.";
+		if (! operation.isModifying()    ||    item.isFailed())
+			item.image = null;
+	}
+
+
+	/**
+	 * Encoding stage: saves the manipulated image as PNG, either next to the original or in
+	 * the output-directory. The image is written to a temporary file first, which then replaces
+	 * the destination in one step, so an original being overwritten survives a failed save.
+	 *
+	 * @param item		The item holding the manipulated image.
+	 */
+	void encode(BatchItem item) {
+		try {
+			item.output = getOutputFile(item);
+			long start = Instrumentation.start();
+			save(item.image, item.output);
+			Instrumentation.finish(OperationType.SAVE, start, pixelsOf(item.image), item.output.length());
+		} catch (IOException | RuntimeException e) {
+			item.output = null;
+			item.failure = e.toString();
+		} finally {
+			item.image = null;
+		}
+	}
+
+
+	/**
+	 * Performs write or erase as a single stage, reading and encoding the image band by band,
+	 * without ever holding the decoded image in memory.
+	 *
+	 * @param item		The item to process.
+	 */
+	void stream(BatchItem item) {
+		try {
+			item.output = getOutputFile(item);
+			if (options.getOperation() == BatchOperation.WRITE)
+				item.result = streamer.write(watermark, item.file, item.output);
+			else
+				item.result = streamer.erase(item.file, item.output);
+		} catch (IOException | RuntimeException e) {
+			item.output = null;
+			item.failure = e.toString();
+		}
+	}
+
+
+	/**
+	 * Reads the watermark as a single stage, decoding only the leading rows of the image unless
+	 * they hold no watermark.
+	 *
+	 * @param item		The item to read.
+	 */
+	void probe(BatchItem item) {
+		try {
+			item.result = probe.read(item.file);
+			if (item.result == null)
+				item.failure = "read-operation failed.";
+		} catch (IOException | RuntimeException e) {
+			item.failure = e.toString();
+		}
+	}
+
+
+	/**
+	 * Reads the watermark as a single stage, taking the result from the cache if the file (or one
+	 * of the same content) has been read before. Otherwise the file is read as configured.
+	 *
+	 * @param item		The item to read.
+	 */
+	void readCached(BatchItem item) {
+		try {
+			item.result = cache.read(item.file, readConfiguration, this::readUncached);
+			if (item.result == null)
+				item.failure = "read-operation failed.";
+		} catch (IOException | RuntimeException e) {
+			item.failure = e.toString();
+		}
+	}
+
+
+	private WatermarkResult readUncached(File file) throws IOException {
+		if (options.isMappedBmp()    &&    MappedBmpWatermarker.isSupported(file))
+			return bmpMapper.read(file);
+		if (options.isProbing())
+			return probe.read(file);
+
+		long start = Instrumentation.start();
+		BufferedImage image = ImageIO.read(file);
+		if (image == null)
+			throw new IOException("Unsupported image-format.");
+		Instrumentation.finish(OperationType.LOAD, start, pixelsOf(image), file.length());
+		return read(image);
+	}
+
+
+	private WatermarkResult read(BufferedImage image) {
+		Double minConfidence = options.getMinConfidence();
+		return (minConfidence == null)  ?  codec.read(image)  :  codec.readByVote(image, minConfidence);
+	}
+
+
+	private static long pixelsOf(BufferedImage image) {
+		return (long) image.getWidth() * image.getHeight();
+	}
+
+
+	/**
+	 * Performs the operation on a memory-mapped BMP-file as a single stage. Manipulated images stay
+	 * BMP-files; without output-directory the original is changed in place.
+	 *
+	 * @param item		The item holding an uncompressed BMP-file.
+	 */
+	void map(BatchItem item) {
+		try {
+			switch (options.getOperation()){
+				case WRITE:
+					item.output = getOutputFile(item);
+					item.result = bmpMapper.write(watermark, item.file, item.output);
+					break;
+				case ERASE:
+					item.output = getOutputFile(item);
+					item.result = bmpMapper.erase(item.file, item.output);
+					break;
+				default:
+					item.result = bmpMapper.read(item.file);
+					break;
+			}
+			if (item.result == null)
+				item.failure = options.getOperation().name().toLowerCase() + "-operation failed.";
+		} catch (IOException | RuntimeException e) {
+			item.output = null;
+			item.failure = e.toString();
+		}
+	}
+
+
+	/**
+	 * Creates the result of a processed item.
+	 *
+	 * @param item		The item that passed all stages or failed in one of them.
+	 *
+	 * @return			The result.
+	 */
+	BatchResult toResult(BatchItem item) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - item.start);
+		BatchOperation operation = options.getOperation();
+
+		if (item.isFailed())
+			return new BatchResult(item.file, null, operation, BatchResult.Status.FAILED, null, 0, 0, 0, millis, item.failure);
+
+		BatchResult.Status status = BatchResult.Status.OK;
+		if (operation == BatchOperation.READ){
+			Double minConfidence = options.getMinConfidence();
+			if (! item.result.isWatermarkPresent())
+				status = BatchResult.Status.NOT_WATERMARKED;
+			else if (minConfidence != null    &&    item.result.getConfidence() < minConfidence)
+				status = BatchResult.Status.UNCERTAIN;
+		}
+		return new BatchResult(item.file, item.output, operation, status, item.result.getPayload(),
+				item.result.getRedundancy(), item.result.getCopies(), item.result.getConfidence(), millis, null);
+	}
+
+
+
+	/**
+	 * Counts a result, prints it as progress and appends it to the manifest.
+	 *
+	 * @param result		The result of one image.
+	 * @param total			Total number of images of the run.
+	 * @param manifest		The manifest or NULL.
+	 */
+	void report(BatchResult result, int total, ManifestWriter manifest) {
+		int count = processed.incrementAndGet();
+		if (result.isFailed())
+			failed.incrementAndGet();
+		else if (result.getStatus() == BatchResult.Status.OK
+				&&    result.getPayload() != null    &&    ! result.getPayload().equals(""))
+			watermarked.incrementAndGet();
+
+		if (! options.isQuiet())
+			System.err.printf("[%d/%d] %s%n", count, total, result);
+
+		if (manifest != null){
+			try {
+				manifest.add(result);
+			} catch (IOException e) {
+				System.err.println("Manifest can't be written: " + e.getMessage());
+			}
+		}
+	}
+
+
+
+	private void save(BufferedImage image, File output) throws IOException {
+		File temporary = File.createTempFile(".watermarker", PNG_EXTENSION, output.getParentFile());
+		try {
+			pngWriter.write(image, temporary);
+			try {
+				Files.move(temporary.toPath(), output.toPath(),
+						StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temporary.toPath());
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Returns the destination assigned to an item by assignOutputFiles(), creating its directory.
+	 *
+	 * @param item				The item to be written.
+	 *
+	 * @return					The destination file.
+	 *
+	 * @throws IOException		Thrown if the destination directory can't be created.
+	 */
+	private File getOutputFile(BatchItem item) throws IOException {
+		File output = outputFiles.get(item.file);
+		if (output == null)
+			output = assignOutputFiles(Collections.singletonMap(item.file, item.relativeName)).get(item.file);
+
+		Files.createDirectories(output.getParentFile().toPath());
+		return output;
+	}
+
+
+	/**
+	 * Determines the destinations of all manipulated images before any of them is written. The name
+	 * of the original is kept, with the extension replaced by ".png" (or ".bmp" for memory-mapped files).
+	 * Without output-directory the file is placed next to the original, otherwise at its relative path
+	 * within the output-directory. A destination already assigned to an earlier image, belonging to
+	 * another input, or existing next to an original other than itself is numbered instead, e.g.
+	 * "a.bmp" becomes "a-2.png" if "a.png" is an input as well. Only an original is ever replaced by
+	 * its own manipulated image.
+	 *
+	 * @param files				The image-files mapped to their relative paths, in processing order.
+	 *
+	 * @return					The image-files mapped to their destinations.
+	 */
+	private Map<File, File> assignOutputFiles(Map<File, String> files) {
+		Set<Path> inputs = new HashSet<>();
+		for (File file : files.keySet()){
+			inputs.add(normalized(file));
+		}
+
+		Map<File, File> outputs = new HashMap<>();
+		Set<Path> taken = new HashSet<>();
+		for (int pass = 0    ;    pass < 2    ;    pass++){
+			for (Map.Entry<File, String> entry : files.entrySet()){
+				File file = entry.getKey();
+				File original = (options.getOutputDirectory() == null)
+						?  file  :  new File(options.getOutputDirectory(), entry.getValue());
+
+				String name = original.getName();
+				int extension = name.lastIndexOf('.');
+				if (extension > 0)
+					name = name.substring(0, extension);
+				String suffix = (options.isMappedBmp()    &&    MappedBmpWatermarker.isSupported(file))
+						?  BMP_EXTENSION  :  PNG_EXTENSION;
+
+				// Images keeping their name claim their destinations first, the others are numbered.
+				if ((pass == 0)  !=  original.getName().equals(name + suffix))
+					continue;
+
+				File directory = original.getAbsoluteFile().getParentFile();
+				File output = new File(directory, name + suffix);
+				for (int n = 2    ;    ! isAvailable(output, file, inputs, taken)    ;    n++){
+					output = new File(directory, name + "-" + n + suffix);
+				}
+				if (! options.isQuiet()    &&    ! output.getName().equals(name + suffix))
+					System.err.printf("%s is written to %s, as %s is taken.%n", file, output, name + suffix);
+
+				taken.add(normalized(output));
+				outputs.put(file, output);
+			}
+		}
+		return outputs;
+	}
+
+
+	private boolean isAvailable(File output, File file, Set<Path> inputs, Set<Path> taken) {
+		Path path = normalized(output);
+		if (taken.contains(path))
+			return false;
+		if (path.equals(normalized(file)))
+			return true;
+		if (inputs.contains(path))
+			return false;
+		return options.getOutputDirectory() != null    ||    ! output.exists();
+	}
+
+
+	private static Path normalized(File file) {
+		return file.getAbsoluteFile().toPath().normalize();
+	}
+
+
+	/**
+	 * Collects the PNG- and BMP-files of all inputs. Directories are listed (recursively, if
+	 * requested), files are taken as they are.
+	 *
+	 * @return					The image-files in a stable order, mapped to their relative paths.
+	 *
+	 * @throws IOException		Thrown if a directory can't be listed.
+	 */
+	private Map<File, String> collectImageFiles() throws IOException {
+		Map<File, String> files = new LinkedHashMap<>();
+
+		for (File input : options.getInputs()){
+			if (! input.isDirectory()){
+				files.put(input, input.getName());
+				continue;
+			}
+
+			Path root = input.toPath();
+			List<Path> found;
+			try (Stream<Path> paths = options.isRecursive()  ?  Files.walk(root)  :  Files.list(root)) {
+				found = paths.filter(p -> Files.isRegularFile(p)    &&    isImageFile(p)).sorted().collect(Collectors.toList());
+			}
+			for (Path path : found){
+				files.put(path.toFile(), root.relativize(path).toString());
+			}
+		}
+
+		return files;
+	}
+
+
+	private static boolean isImageFile(Path path) {
+		String name = path.getFileName().toString().toLowerCase();
+		return name.endsWith(".png")    ||    name.endsWith(".bmp");
+	}
+}
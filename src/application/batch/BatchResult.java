@@ -0,0 +1,72 @@
+package application.batch;
+
+import java.io.File;
+
+/**
+ * The outcome of a batch-operation on a single image, as written to the manifest.
+ */
+public class BatchResult {
+
+	public enum Status {
+		OK,
+		/** A watermark was voted for, but with less than the required confidence. */
+		UNCERTAIN,
+		NOT_WATERMARKED,
+		FAILED
+	}
+
+
+	private final File             file;
+	private final File             output;
+	private final BatchOperation   operation;
+	private final Status           status;
+	private final String           payload;
+	private final int              redundancy;
+	private final int              copies;
+	private final double           confidence;
+	private final long             millis;
+	private final String           message;
+
+
+
+	BatchResult(File file, File output, BatchOperation operation, Status status, String payload,
+			int redundancy, int copies, double confidence, long millis, String message) {
+		this.file 		= file;
+		this.output 	= output;
+		this.operation 	= operation;
+		this.status 	= status;
+		this.payload 	= payload;
+		this.redundancy = redundancy;
+		this.copies 	= copies;
+		this.confidence = confidence;
+		this.millis 	= millis;
+		this.message 	= message;
+	}
+
+
+
+	public File				getFile()						{	return file;					}
+	public File				getOutput()						{	return output;					}
+	public BatchOperation	getOperation()					{	return operation;				}
+	public Status			getStatus()						{	return status;					}
+	public String			getPayload()					{	return payload;					}
+	public int				getRedundancy()					{	return redundancy;				}
+	public int				getCopies()						{	return copies;					}
+	public double			getConfidence()					{	return confidence;				}
+	public long				getMillis()						{	return millis;					}
+	public String			getMessage()					{	return message;					}
+
+	public boolean			isFailed()						{	return status == Status.FAILED;	}
+
+
+
+	@Override
+	public String toString() {
+		String text = file + " -> " + status;
+		if (payload != null    &&    ! payload.equals(""))
+			text += " \"" + payload + "\"";
+		if (message != null)
+			text += " (" + message + ")";
+		return text;
+	}
+}
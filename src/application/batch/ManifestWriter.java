@@ -0,0 +1,124 @@
+package application.batch;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes one line per processed image to a manifest-file. Files ending in ".json" or ".jsonl"
+ * receive JSON lines, all others CSV with a header-line. Results may be added from any thread.
+ */
+public class ManifestWriter implements Closeable {
+
+	private final Writer    writer;
+	private final boolean   json;
+
+
+
+	/**
+	 * Constructor. Creates (or replaces) the manifest-file.
+	 *
+	 * @param file			The manifest-file.
+	 *
+	 * @throws IOException	Thrown if the file can't be created.
+	 */
+	public ManifestWriter(File file) throws IOException {
+		String name = file.getName().toLowerCase();
+		json = name.endsWith(".json")    ||    name.endsWith(".jsonl");
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+
+		if (! json){
+			writer.write("file,output,operation,status,payload,redundancy,copies,confidence,millis,message\n");
+		}
+	}
+
+
+
+	/**
+	 * Appends the result of one image to the manifest.
+	 *
+	 * @param result		The result to append.
+	 *
+	 * @throws IOException	Thrown if writing fails.
+	 */
+	public synchronized void add(BatchResult result) throws IOException {
+		String output = (result.getOutput() == null)  ?  null  :  result.getOutput().getPath();
+
+		if (json){
+			writer.write("{\"file\":" + jsonValue(result.getFile().getPath())
+					+ ",\"output\":" + jsonValue(output)
+					+ ",\"operation\":" + jsonValue(result.getOperation().name())
+					+ ",\"status\":" + jsonValue(result.getStatus().name())
+					+ ",\"payload\":" + jsonValue(result.getPayload())
+					+ ",\"redundancy\":" + result.getRedundancy()
+					+ ",\"copies\":" + result.getCopies()
+					+ ",\"confidence\":" + confidenceValue(result.getConfidence())
+					+ ",\"millis\":" + result.getMillis()
+					+ ",\"message\":" + jsonValue(result.getMessage()) + "}\n");
+		} else {
+			writer.write(csvValue(result.getFile().getPath()) + ","
+					+ csvValue(output) + ","
+					+ result.getOperation().name() + ","
+					+ result.getStatus().name() + ","
+					+ csvValue(result.getPayload()) + ","
+					+ result.getRedundancy() + ","
+					+ result.getCopies() + ","
+					+ confidenceValue(result.getConfidence()) + ","
+					+ result.getMillis() + ","
+					+ csvValue(result.getMessage()) + "\n");
+		}
+	}
+
+
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+
+
+
+	private static String confidenceValue(double confidence) {
+		return String.format(Locale.ROOT, "%.6f", confidence);
+	}
+
+
+	private static String csvValue(String value) {
+		if (value == null)
+			return "";
+		if (value.contains(",")    ||    value.contains("\"")    ||    value.contains("\n")    ||    value.contains("\r"))
+			return "\"" + value.replace("\"", "\"\"") + "\"";
+		return value;
+	}
+
+
+	private static String jsonValue(String value) {
+		if (value == null)
+			return "null";
+
+		StringBuilder quoted = new StringBuilder(value.length() + 2);
+		quoted.append('"');
+		for (int i = 0    ;    i < value.length()    ;    i++){
+			char c = value.charAt(i);
+			switch (c){
+				case '"':	quoted.append("\\\"");	break;
+				case '\\':	quoted.append("\\\\");	break;
+				case '\n':	quoted.append("\\n");	break;
+				case '\r':	quoted.append("\\r");	break;
+				case '\t':	quoted.append("\\t");	break;
+				default:
+					if (c < 0x20)
+						quoted.append(String.format("\\u%04x", (int) c));
+					else
+						quoted.append(c);
+			}
+		}
+		quoted.append('"');
+		return quoted.toString();
+	}
+}
@@ -0,0 +1,46 @@
+package application.data;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Delivers an image-file as a sequence of horizontal bands, from top to bottom, without decoding
+ * the whole image at once. Only plain 8-bit truecolor PNG-files are supported, decoded by a
+ * PngScanlineReader in a single pass; other formats can't be decoded band by band without either
+ * decoding the file again for every band or converting it to truecolor.
+ */
+abstract class BandSource implements Closeable {
+
+	/**
+	 * Opens an image-file for reading it band by band.
+	 *
+	 * @param file			The image-file.
+	 *
+	 * @return				The band-source, or NULL if the file has an unsupported format.
+	 *
+	 * @throws IOException	Thrown if the file can't be read.
+	 */
+	static BandSource open(File file) throws IOException {
+		return PngScanlineReader.open(file);
+	}
+
+
+
+	abstract int getWidth();
+	abstract int getHeight();
+
+
+	/**
+	 * Decodes the rows following the previously returned band. The returned image is only valid
+	 * until the next call; it is of type INT_RGB or INT_ARGB.
+	 *
+	 * @param rows			Number of rows of the band.
+	 *
+	 * @return				The band.
+	 *
+	 * @throws IOException	Thrown if decoding fails.
+	 */
+	abstract BufferedImage nextBand(int rows) throws IOException;
+}
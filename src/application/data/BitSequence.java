@@ -0,0 +1,118 @@
+package application.data;
+
+import java.util.Arrays;
+
+/**
+ * An immutable sequence of bits, backed by a byte-array. Bit i is the bit at position (7 - i % 8)
+ * of byte (i / 8), so the bits of every byte appear most significant bit first, the order in which
+ * watermarks are embedded. Single bits are accessed by shift and mask; no textual representation
+ * of the bits is ever created.
+ */
+public final class BitSequence {
+
+	private final byte[]	bytes;
+	private final int		length;
+
+
+
+	private BitSequence(byte[] bytes) {
+		this.bytes 	= bytes;
+		this.length = bytes.length * Byte.SIZE;
+	}
+
+
+	/**
+	 * Creates a sequence holding the bits of the given bytes.
+	 *
+	 * @param bytes			The bytes; the array is copied.
+	 *
+	 * @return				The sequence of bytes.length * 8 bits.
+	 */
+	public static BitSequence of(byte[] bytes) {
+		return new BitSequence(bytes.clone());
+	}
+
+
+	/**
+	 * Creates the complete bit-sequence of a watermark: the indicator, one binary unit holding the
+	 * size of the payload in bits, and the payload itself.
+	 *
+	 * @param indicator		The encoded watermark-indicator.
+	 * @param payload		The encoded payload of at most ReadWriteUtilities.MAX_PAYLOAD_SIZE bytes.
+	 *
+	 * @return				The sequence.
+	 */
+	static BitSequence forWatermark(byte[] indicator, byte[] payload) {
+		if (payload.length > ReadWriteUtilities.MAX_PAYLOAD_SIZE)
+			throw new IllegalArgumentException("The payload must not exceed "
+					+ ReadWriteUtilities.MAX_PAYLOAD_SIZE + " bytes.");
+
+		byte[] bytes = new byte[indicator.length + 1 + payload.length];
+		System.arraycopy(indicator, 0, bytes, 0, indicator.length);
+		bytes[indicator.length] = (byte) (payload.length * ReadWriteUtilities.LENGTH_OF_BINARY_UNIT);
+		System.arraycopy(payload, 0, bytes, indicator.length + 1, payload.length);
+		return new BitSequence(bytes);
+	}
+
+
+
+	/**
+	 * @return				Number of bits in the sequence.
+	 */
+	public int length() {
+		return length;
+	}
+
+
+	/**
+	 * Returns a single bit.
+	 *
+	 * @param index			Position of the bit, from 0 to length() - 1.
+	 *
+	 * @return				Either 0 or 1.
+	 */
+	public int bitAt(int index) {
+		return (bytes[index >>> 3] >>> (7 - (index & 7))) & 1;
+	}
+
+
+	/**
+	 * Repeats the sequence to the given number of bits, one bit per element. Consecutive pixels of a
+	 * row take consecutive elements, starting at any position within the first cycle.
+	 *
+	 * @param count			Number of bits.
+	 *
+	 * @return				Element i holding bitAt(i % length()).
+	 */
+	int[] unroll(int count) {
+		int[] bits = new int[count];
+		for (int i = 0    ;    i < count  &&  i < length    ;    i++){
+			bits[i] = bitAt(i);
+		}
+		for (int i = length    ;    i < count    ;    i++){
+			bits[i] = bits[i - length];
+		}
+		return bits;
+	}
+
+
+	/**
+	 * @return				A copy of the bytes holding the sequence.
+	 */
+	public byte[] toByteArray() {
+		return bytes.clone();
+	}
+
+
+
+	@Override
+	public boolean equals(Object other) {
+		return (other instanceof BitSequence)    &&    Arrays.equals(bytes, ((BitSequence) other).bytes);
+	}
+
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(bytes);
+	}
+}
@@ -0,0 +1,78 @@
+package application.data;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Fallback raster-engine for all layouts without a direct engine (e.g. indexed images).
+ * Each pixel is read as ARGB-value and written back through the color-model of the image,
+ * directly into the raster of the image.
+ */
+class ColorModelRasterEngine extends RasterEngine {
+
+	private static final int		BLUE_LSB		= 1;
+	private static final int		BLUE_MASK		= 0xFF;
+
+
+	private final BufferedImage		image;
+	private final ColorModel		imageColorModel;
+	private final WritableRaster	imageRaster;
+
+
+
+	ColorModelRasterEngine(BufferedImage image) {
+		super(image.getRaster().getWidth(), image.getRaster().getHeight());
+		this.image 		= image;
+		imageColorModel = image.getColorModel();
+		imageRaster 	= image.getRaster();
+	}
+
+
+
+	@Override
+	int getBlueBit(int x, int y) {
+		return image.getRGB(x, y) & BLUE_LSB;
+	}
+
+
+	@Override
+	void clearBlueBit(int x, int y) {
+		int argb = image.getRGB(x, y);
+		if ((argb & BLUE_LSB) != 0)
+			writePixel(x, y, argb & ~BLUE_LSB);
+	}
+
+
+	@Override
+	void addBlueBit(int x, int y, int bit) {
+		int argb = image.getRGB(x, y);
+		int blue = (argb & BLUE_MASK) + bit;
+		writePixel(x, y, (argb & ~BLUE_MASK) | blue);
+	}
+
+
+	/**
+	 * The pixel is still visited once, but written in two steps: a palette may not hold the cleared
+	 * color, and adding the bit to the color actually stored keeps the result identical to a separate
+	 * erase followed by a write.
+	 */
+	@Override
+	void setBlueBit(int x, int y, int bit) {
+		clearBlueBit(x, y);
+		addBlueBit(x, y, bit);
+	}
+
+
+
+	/**
+	 * Converts an ARGB-value to the representation of the color-model and stores it in the raster.
+	 *
+	 * @param x			Horizontal position of the pixel.
+	 * @param y			Vertical position of the pixel.
+	 * @param argb		The new color-value.
+	 */
+	private void writePixel(int x, int y, int argb) {
+		imageRaster.setDataElements(x, y, imageColorModel.getDataElements(argb, null));
+	}
+}
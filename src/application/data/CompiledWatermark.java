@@ -0,0 +1,63 @@
+package application.data;
+
+import java.util.Map;
+
+/**
+ * A watermark prepared once for writing it to any number of images, e.g. by a batch-run.
+ * The payload is encoded to its bit-sequence on creation (see WatermarkCodec.compile()), and the
+ * sequence unrolled to the length of a row is kept for the most recently used row-lengths, so images
+ * of the same width share the pattern and writing a row is a plain copy of a slice of it.
+ *
+ * A compiled watermark can be written by any codec using the same watermark-indicator, from any
+ * number of threads at the same time.
+ */
+public final class CompiledWatermark {
+
+	/** Number of row-lengths whose unrolled patterns are kept. */
+	public static final int		CACHED_LINE_LENGTHS		= 8;
+
+
+	private final String					payload;
+	private final String					watermarkIndicator;
+	private final BitSequence				binaries;
+	private final Map<Integer, int[]>		patterns		= new LruMap<>(CACHED_LINE_LENGTHS);
+
+
+
+	CompiledWatermark(String payload, String watermarkIndicator, BitSequence binaries) {
+		this.payload 				= payload;
+		this.watermarkIndicator 	= watermarkIndicator;
+		this.binaries 				= binaries;
+	}
+
+
+
+	public String			getPayload()					{	return payload;					}
+	public String			getWatermarkIndicator()			{	return watermarkIndicator;		}
+
+	BitSequence				getBinaries()					{	return binaries;				}
+
+
+
+	/**
+	 * Returns the sequence unrolled to the length of a cycle plus a row, so every row is a contiguous
+	 * slice of it, whatever position within the cycle it starts at. The pattern is shared and must
+	 * not be modified.
+	 *
+	 * @param lineLength	Number of manipulated pixels per row.
+	 *
+	 * @return				The unrolled sequence, element i holding bit i % length of the sequence.
+	 */
+	int[] patternFor(int lineLength) {
+		synchronized (patterns) {
+			return patterns.computeIfAbsent(lineLength, length -> binaries.unroll(binaries.length() + length));
+		}
+	}
+
+
+
+	@Override
+	public String toString() {
+		return "CompiledWatermark[payload=" + payload + ", bits=" + binaries.length() + "]";
+	}
+}
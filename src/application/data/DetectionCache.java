@@ -0,0 +1,340 @@
+package application.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * Remembers the results of reading watermarks from image-files, so files checked again are not
+ * decoded and searched again.
+ *
+ * Results are kept per configuration of the reader, e.g. the fingerprint of the codec (see
+ * WatermarkCodec.getFingerprint()) plus the way of reading, since the same file may hold a watermark
+ * for one codec and none for another.
+ *
+ * A file is recognized by its identity first: absolute path, size and time of last modification.
+ * If the identity is unknown (e.g. the file has been copied or uploaded again), the file is recognized
+ * by its content: size, CRC32 and Adler32 of its bytes. Hashing reads the compressed file once, which
+ * is a fraction of the cost of decoding it. Only if both fail, the file is actually read.
+ *
+ * Both indices hold at most maxEntries entries and evict the least recently used ones. The cache can
+ * be saved to an index-file and is loaded from it on construction, so hits survive a restart. It can
+ * be used by any number of threads at the same time; reading and hashing happen outside the lock.
+ */
+public class DetectionCache {
+
+	/** Default maximum number of remembered files. */
+	public static final int		DEFAULT_MAX_ENTRIES		= 100000;
+
+	private static final int	INDEX_MAGIC				= 0x574D4443;
+	private static final int	INDEX_VERSION			= 2;
+	private static final int	BUFFER_SIZE				= 1 << 16;
+
+
+	private final File								indexFile;
+	private final Map<String, ContentKey>			identities;
+	private final Map<ContentKey, WatermarkResult>	results;
+
+	private final AtomicLong						identityHits	= new AtomicLong();
+	private final AtomicLong						contentHits		= new AtomicLong();
+	private final AtomicLong						misses			= new AtomicLong();
+
+
+
+	/**
+	 * Constructor. Creates a cache held in memory only.
+	 *
+	 * @param maxEntries	Maximum number of remembered files.
+	 */
+	public DetectionCache(int maxEntries) {
+		this(maxEntries, null);
+	}
+
+
+	/**
+	 * Constructor. Loads the entries of the index-file, if it exists. An index-file of an earlier version
+	 * is ignored and replaced by save().
+	 *
+	 * @param maxEntries	Maximum number of remembered files.
+	 * @param indexFile		The file the cache is saved to by save(), or NULL.
+	 *
+	 * @throws IllegalArgumentException		Thrown if the index-file exists but can't be read.
+	 */
+	public DetectionCache(int maxEntries, File indexFile) {
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("The cache must hold at least one entry.");
+
+		this.indexFile 	= indexFile;
+		this.identities = new LruMap<>(maxEntries);
+		this.results 	= new LruMap<>(maxEntries);
+
+		if (indexFile != null    &&    indexFile.isFile()){
+			try {
+				load();
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Index-file " + indexFile + " can't be read.", e);
+			}
+		}
+	}
+
+
+
+	public long		getIdentityHits()					{	return identityHits.get();					}
+	public long		getContentHits()					{	return contentHits.get();					}
+	public long		getHits()							{	return identityHits.get() + contentHits.get();	}
+	public long		getMisses()							{	return misses.get();						}
+
+	public synchronized int		size()					{	return results.size();						}
+
+
+
+	/**
+	 * Returns the remembered result for an image-file read with the given configuration, or reads the
+	 * file and remembers the result. Failed reads (NULL-results and exceptions) are not remembered.
+	 *
+	 * @param file			The image-file.
+	 * @param configuration	Identifies everything besides the file the result depends on.
+	 * @param reader		Reads the watermark of the file in case of a miss.
+	 *
+	 * @return				The result.
+	 *
+	 * @throws IOException	Thrown if the file can't be accessed, or by the reader.
+	 */
+	public WatermarkResult read(File file, String configuration, Reader reader) throws IOException {
+		String identity = configuration + '\0' + identityOf(file);
+		WatermarkResult result = lookup(identity);
+		if (result != null){
+			identityHits.incrementAndGet();
+			return result;
+		}
+
+		ContentKey content = contentOf(file, configuration);
+		result = lookup(identity, content);
+		if (result != null){
+			contentHits.incrementAndGet();
+			return result;
+		}
+
+		misses.incrementAndGet();
+		result = reader.read(file);
+		if (result != null)
+			remember(identity, content, result);
+		return result;
+	}
+
+
+
+	/**
+	 * Writes all entries to the index-file, replacing it. Entries are written from the least to the
+	 * most recently used, so loading them restores the order of eviction.
+	 *
+	 * @throws IOException	Thrown if the index-file can't be written.
+	 */
+	public void save() throws IOException {
+		if (indexFile == null)
+			return;
+
+		File directory = indexFile.getAbsoluteFile().getParentFile();
+		File temporary = File.createTempFile(".watermarker", ".cache", directory);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), BUFFER_SIZE))) {
+			List<Map.Entry<ContentKey, WatermarkResult>> resultEntries;
+			List<Map.Entry<String, ContentKey>> identityEntries;
+			synchronized (this) {
+				resultEntries = new ArrayList<>(results.entrySet());
+				identityEntries = new ArrayList<>(identities.entrySet());
+			}
+
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(INDEX_VERSION);
+			out.writeInt(resultEntries.size());
+			for (Map.Entry<ContentKey, WatermarkResult> entry : resultEntries){
+				entry.getKey().write(out);
+				writeResult(out, entry.getValue());
+			}
+			out.writeInt(identityEntries.size());
+			for (Map.Entry<String, ContentKey> entry : identityEntries){
+				out.writeUTF(entry.getKey());
+				entry.getValue().write(out);
+			}
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temporary.toPath());
+			throw e;
+		}
+
+		Files.move(temporary.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+
+
+	private synchronized WatermarkResult lookup(String identity) {
+		ContentKey content = identities.get(identity);
+		return (content == null)  ?  null  :  results.get(content);
+	}
+
+
+	private synchronized WatermarkResult lookup(String identity, ContentKey content) {
+		WatermarkResult result = results.get(content);
+		if (result != null)
+			identities.put(identity, content);
+		return result;
+	}
+
+
+	private synchronized void remember(String identity, ContentKey content, WatermarkResult result) {
+		results.put(content, result);
+		identities.put(identity, content);
+	}
+
+
+
+	private void load() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), BUFFER_SIZE))) {
+			int magic = in.readInt();
+			int version = in.readInt();
+			if (magic == INDEX_MAGIC    &&    version < INDEX_VERSION)
+				return;
+			if (magic != INDEX_MAGIC    ||    version != INDEX_VERSION)
+				throw new IOException("Unknown format.");
+
+			int resultCount = in.readInt();
+			for (int i = 0    ;    i < resultCount    ;    i++){
+				results.put(ContentKey.read(in), readResult(in));
+			}
+			int identityCount = in.readInt();
+			for (int i = 0    ;    i < identityCount    ;    i++){
+				identities.put(in.readUTF(), ContentKey.read(in));
+			}
+		}
+	}
+
+
+	private static void writeResult(DataOutputStream out, WatermarkResult result) throws IOException {
+		out.writeUTF(result.getPayload());
+		out.writeBoolean(result.isColumnWise());
+		out.writeInt(result.getLineIndex());
+		out.writeByte((result.getReadDirection() == null)  ?  -1  :  result.getReadDirection().ordinal());
+		out.writeInt(result.getCopies());
+		out.writeDouble(result.getConfidence());
+	}
+
+
+	private static WatermarkResult readResult(DataInputStream in) throws IOException {
+		String payload = in.readUTF();
+		boolean columnWise = in.readBoolean();
+		int lineIndex = in.readInt();
+		int direction = in.readByte();
+		int copies = in.readInt();
+		double confidence = in.readDouble();
+
+		if (direction < 0)
+			return WatermarkResult.empty();
+		return WatermarkResult.voted(payload, columnWise, lineIndex, ReadDirection.values()[direction], copies, confidence);
+	}
+
+
+
+	/**
+	 * @param file			The image-file.
+	 *
+	 * @return				Absolute path, size and time of last modification of the file.
+	 *
+	 * @throws IOException	Thrown if the file doesn't exist.
+	 */
+	private static String identityOf(File file) throws IOException {
+		if (! file.isFile())
+			throw new IOException("File " + file + " not found.");
+		return file.getAbsolutePath() + '\0' + file.length() + '\0' + file.lastModified();
+	}
+
+
+	/**
+	 * @param file			The image-file.
+	 * @param configuration	The configuration of the reader.
+	 *
+	 * @return				Configuration, and size, CRC32 and Adler32 of the bytes of the file.
+	 *
+	 * @throws IOException	Thrown if the file can't be read.
+	 */
+	private static ContentKey contentOf(File file, String configuration) throws IOException {
+		CRC32 crc = new CRC32();
+		Adler32 adler = new Adler32();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long size = 0;
+
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) > 0){
+				crc.update(buffer, 0, read);
+				adler.update(buffer, 0, read);
+				size += read;
+			}
+		}
+		return new ContentKey(configuration, size, (int) crc.getValue(), (int) adler.getValue());
+	}
+
+
+
+	/**
+	 * Reads the watermark of an image-file in case of a cache-miss.
+	 */
+	public interface Reader {
+		WatermarkResult read(File file) throws IOException;
+	}
+
+
+	/**
+	 * Recognizes a file by its content, read with a configuration.
+	 */
+	private static class ContentKey {
+
+		private final String	configuration;
+		private final long		size;
+		private final int		crc;
+		private final int		adler;
+
+		ContentKey(String configuration, long size, int crc, int adler) {
+			this.configuration 	= configuration;
+			this.size 			= size;
+			this.crc 			= crc;
+			this.adler 			= adler;
+		}
+
+		static ContentKey read(DataInputStream in) throws IOException {
+			return new ContentKey(in.readUTF(), in.readLong(), in.readInt(), in.readInt());
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeUTF(configuration);
+			out.writeLong(size);
+			out.writeInt(crc);
+			out.writeInt(adler);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (! (other instanceof ContentKey))
+				return false;
+			ContentKey key = (ContentKey) other;
+			return size == key.size    &&    crc == key.crc    &&    adler == key.adler    &&    configuration.equals(key.configuration);
+		}
+
+		@Override
+		public int hashCode() {
+			return ((int) (size ^ (size >>> 32)) * 31 * 31 + crc * 31 + adler) * 31 + configuration.hashCode();
+		}
+	}
+}
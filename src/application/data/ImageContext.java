@@ -0,0 +1,36 @@
+package application.data;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The per-call state of a WatermarkCodec operation: the raster-engine of the image, its
+ * dimensions, and the values collected while reading or writing. A context is created at the
+ * start of every operation. The tasks of a parallel operation share it, but only update the
+ * counters of scanned lines; all other values are set by the calling thread.
+ */
+class ImageContext {
+
+	final RasterEngine    engine;
+	final int             imageHeight;
+	final int             imageWidth;
+
+	int                   extendedStepSize;
+	int                   redundancy;
+
+	boolean               columnWise;
+	int                   lineIndex;
+	ReadDirection         readDirection;
+
+	long                  bitsProbed;
+
+	final AtomicInteger   rowsScanned       = new AtomicInteger();
+	final AtomicInteger   columnsScanned    = new AtomicInteger();
+
+
+
+	ImageContext(RasterEngine engine) {
+		this.engine 		= engine;
+		this.imageHeight 	= engine.getHeight();
+		this.imageWidth 	= engine.getWidth();
+	}
+}
@@ -0,0 +1,128 @@
+package application.data;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reports the timings and sizes of loading, writing, reading, erasing and saving to registered
+ * OperationListeners, e.g. OperationMetrics or the flight-recorder.
+ *
+ * Without listeners the instrumentation is disabled: start() doesn't even read the clock and
+ * finish() returns after checking a flag, so the operations run at full speed.
+ *
+ * The flight-recorder-listener (FlightRecorderListener, built separately from src-jfr for JDK 11
+ * or later) is registered by enableFlightRecorder(), or on start-up with the system-property
+ * watermarker.jfr=true.
+ */
+public final class Instrumentation {
+
+	private static final String						FLIGHT_RECORDER_LISTENER	= "application.data.FlightRecorderListener";
+	private static final String						JFR_PROPERTY				= "watermarker.jfr";
+
+	private static final List<OperationListener>	LISTENERS					= new CopyOnWriteArrayList<>();
+	private static volatile boolean					enabled;
+
+	static {
+		if (Boolean.getBoolean(JFR_PROPERTY))
+			enableFlightRecorder();
+	}
+
+
+
+	private Instrumentation() {
+	}
+
+
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+
+	public static void addListener(OperationListener listener) {
+		LISTENERS.add(listener);
+		enabled = true;
+	}
+
+
+	public static void removeListener(OperationListener listener) {
+		LISTENERS.remove(listener);
+		enabled = ! LISTENERS.isEmpty();
+	}
+
+
+	/**
+	 * Registers the listener emitting flight-recorder-events, if it is available.
+	 *
+	 * @return			True if the listener has been registered.
+	 */
+	public static boolean enableFlightRecorder() {
+		try {
+			addListener((OperationListener) Class.forName(FLIGHT_RECORDER_LISTENER).getDeclaredConstructor().newInstance());
+			return true;
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			return false;
+		}
+	}
+
+
+
+	/**
+	 * Marks the start of an operation and notifies the listeners.
+	 *
+	 * @return			The current time in nanoseconds, or 0 if the instrumentation is disabled.
+	 */
+	public static long start() {
+		if (! enabled)
+			return 0;
+
+		long start = System.nanoTime();
+		for (OperationListener listener : LISTENERS){
+			listener.operationStarted(start);
+		}
+		return start;
+	}
+
+
+	/**
+	 * Reports a finished operation other than reading.
+	 *
+	 * @param type		The operation.
+	 * @param start		The value returned by start().
+	 * @param pixels	Number of pixels decoded, encoded or manipulated.
+	 * @param bytes		Number of bytes read or written, or 0.
+	 */
+	public static void finish(OperationType type, long start, long pixels, long bytes) {
+		if (enabled    &&    start != 0)
+			dispatch(new OperationRecord(type, start, System.nanoTime() - start, pixels, bytes, 0, 0, false, null));
+	}
+
+
+	/**
+	 * Reports a finished search for a watermark.
+	 *
+	 * @param start		The value returned by start().
+	 * @param context	The context of the search, holding the scanned lines.
+	 * @param stepSize	The distance between two read pixels of a line.
+	 * @param result	The result, or NULL in case of failure.
+	 */
+	static void finishRead(long start, ImageContext context, int stepSize, WatermarkResult result) {
+		if (! enabled    ||    start == 0)
+			return;
+
+		int rows = context.rowsScanned.get();
+		int columns = context.columnsScanned.get();
+		long pixels = (long) rows * RasterEngine.lineLength(context.imageWidth, stepSize)
+						+ (long) columns * RasterEngine.lineLength(context.imageHeight, stepSize) + context.bitsProbed;
+		boolean hit = result != null    &&    result.isWatermarkPresent();
+		dispatch(new OperationRecord(OperationType.READ, start, System.nanoTime() - start, pixels, 0, rows, columns, hit,
+				hit  ?  result.getReadDirection()  :  null));
+	}
+
+
+	private static void dispatch(OperationRecord record) {
+		for (OperationListener listener : LISTENERS){
+			listener.operationFinished(record);
+		}
+	}
+}
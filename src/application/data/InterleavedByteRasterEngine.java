@@ -0,0 +1,102 @@
+package application.data;
+
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+
+/**
+ * Raster-engine for images storing the color-components of a pixel in consecutive bytes
+ * (TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR). The position of the blue-byte is taken from the
+ * band-offsets of the sample-model.
+ */
+class InterleavedByteRasterEngine extends RasterEngine {
+
+	private final byte[]	data;
+	private final int		base;
+	private final int		scanlineStride;
+	private final int		pixelStride;
+	private final LsbKernel	kernel			= LsbKernel.get();
+
+
+
+	InterleavedByteRasterEngine(WritableRaster raster) {
+		super(raster.getWidth(), raster.getHeight());
+		ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+		DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+
+		data 			= buffer.getData();
+		scanlineStride 	= sampleModel.getScanlineStride();
+		pixelStride 	= sampleModel.getPixelStride();
+		base 			= buffer.getOffset() + sampleModel.getOffset(
+								raster.getMinX() - raster.getSampleModelTranslateX(),
+								raster.getMinY() - raster.getSampleModelTranslateY(),
+								BLUE_BAND);
+	}
+
+
+
+	@Override
+	int getBlueBit(int x, int y) {
+		return data[base + y * scanlineStride + x * pixelStride] & 1;
+	}
+
+
+	@Override
+	void clearBlueBit(int x, int y) {
+		data[base + y * scanlineStride + x * pixelStride] &= ~1;
+	}
+
+
+	@Override
+	void addBlueBit(int x, int y, int bit) {
+		data[base + y * scanlineStride + x * pixelStride] |= bit;
+	}
+
+
+	@Override
+	void setBlueBit(int x, int y, int bit) {
+		int index = base + y * scanlineStride + x * pixelStride;
+		data[index] = (byte) ((data[index] & ~1) | bit);
+	}
+
+
+	@Override
+	void writeBlueBits(int y, int stepSize, int[] bits, int start) {
+		kernel.embed(data, base + y * scanlineStride, pixelStride * stepSize, lineLength(width, stepSize), bits, start);
+	}
+
+
+	@Override
+	boolean isRowIndependent() {
+		return true;
+	}
+
+
+	@Override
+	void readBlueBits(int y, int stepSize, long[] destination) {
+		int count = lineLength(width, stepSize);
+		int index = base + y * scanlineStride;
+		int indexStep = pixelStride * stepSize;
+
+		for (int w = 0    ;    w < wordsPerLine(width, stepSize)    ;    w++){
+			int limit = Math.min(Long.SIZE, count - w * Long.SIZE);
+			destination[w] = kernel.extract(data, index, indexStep, limit);
+			index += limit * indexStep;
+		}
+	}
+
+
+	@Override
+	void readBlueBitColumns(int[] columns, int first, int count, int stepSize, long[][] destination) {
+		clearLines(destination, count, wordsPerLine(height, stepSize));
+
+		for (int y = 0, i = 0    ;    y < height    ;    y += stepSize, i++){
+			int shift = i & (Long.SIZE - 1);
+			int word = i >>> 6;
+			int rowStart = base + y * scanlineStride;
+			for (int c = 0    ;    c < count    ;    c++){
+				destination[c][word] |= (long) (data[rowStart + columns[first + c] * pixelStride] & 1) << shift;
+			}
+		}
+	}
+}
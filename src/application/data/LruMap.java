@@ -0,0 +1,25 @@
+package application.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A map in access-order, evicting its least recently used entry beyond a maximum size.
+ * Like LinkedHashMap it is not thread-safe; even reading changes the order of its entries.
+ */
+class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+	private static final long	serialVersionUID	= 1L;
+
+	private final int			maxEntries;
+
+	LruMap(int maxEntries) {
+		super(16, 0.75f, true);
+		this.maxEntries = maxEntries;
+	}
+
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+		return size() > maxEntries;
+	}
+}
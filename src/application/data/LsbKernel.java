@@ -0,0 +1,119 @@
+package application.data;
+
+/**
+ * The innermost loops of embedding and extracting blue-LSBs on a contiguous run of pixels of a
+ * packed-int or interleaved-byte raster. This class holds the scalar implementation; a subclass using
+ * SIMD-instructions (VectorLsbKernel, built separately from src-vector for JDK 17 or later) is selected
+ * at runtime, if it is on the class-path and the module jdk.incubator.vector is available.
+ * The scalar kernel can be enforced with the system-property watermarker.kernel=scalar.
+ */
+class LsbKernel {
+
+	private static final String		VECTOR_KERNEL		= "application.data.VectorLsbKernel";
+	private static final String		KERNEL_PROPERTY		= "watermarker.kernel";
+
+	private static final LsbKernel	SELECTED			= select();
+
+
+
+	/**
+	 * @return		The kernel selected for this runtime.
+	 */
+	static LsbKernel get() {
+		return SELECTED;
+	}
+
+
+	private static LsbKernel select() {
+		if (! "scalar".equals(System.getProperty(KERNEL_PROPERTY))){
+			try {
+				return (LsbKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+				// no vector-support in this runtime
+			}
+		}
+		return new LsbKernel();
+	}
+
+
+
+	/**
+	 * @return		A short name of the kernel, e.g. for benchmark-reports.
+	 */
+	String getName() {
+		return "scalar";
+	}
+
+
+	/**
+	 * Sets the blue-LSBs of consecutive packed-int pixels to consecutive bits of a pattern.
+	 *
+	 * @param data			The pixels.
+	 * @param offset		Index of the first pixel.
+	 * @param count			Number of pixels.
+	 * @param bits			The pattern, one bit (0 or 1) per element.
+	 * @param bitOffset		Index of the bit for the first pixel.
+	 * @param shift			Position of the blue-LSB within a pixel.
+	 */
+	void embed(int[] data, int offset, int count, int[] bits, int bitOffset, int shift) {
+		int clear = ~(1 << shift);
+		for (int i = 0    ;    i < count    ;    i++){
+			data[offset + i] = (data[offset + i] & clear) | (bits[bitOffset + i] << shift);
+		}
+	}
+
+
+	/**
+	 * Reads the blue-LSBs of up to 64 consecutive packed-int pixels.
+	 *
+	 * @param data			The pixels.
+	 * @param offset		Index of the first pixel.
+	 * @param count			Number of pixels, at most 64.
+	 * @param shift			Position of the blue-LSB within a pixel.
+	 *
+	 * @return				The bits, the first pixel being bit 0.
+	 */
+	long extract(int[] data, int offset, int count, int shift) {
+		long word = 0;
+		for (int i = 0    ;    i < count    ;    i++){
+			word |= (long) ((data[offset + i] >>> shift) & 1) << i;
+		}
+		return word;
+	}
+
+
+	/**
+	 * Sets the blue-LSBs of consecutive interleaved-byte pixels to consecutive bits of a pattern.
+	 *
+	 * @param data			The samples.
+	 * @param offset		Index of the blue-byte of the first pixel.
+	 * @param pixelStride	Number of bytes per pixel.
+	 * @param count			Number of pixels.
+	 * @param bits			The pattern, one bit (0 or 1) per element.
+	 * @param bitOffset		Index of the bit for the first pixel.
+	 */
+	void embed(byte[] data, int offset, int pixelStride, int count, int[] bits, int bitOffset) {
+		for (int i = 0, index = offset    ;    i < count    ;    i++, index += pixelStride){
+			data[index] = (byte) ((data[index] & ~1) | bits[bitOffset + i]);
+		}
+	}
+
+
+	/**
+	 * Reads the blue-LSBs of up to 64 consecutive interleaved-byte pixels.
+	 *
+	 * @param data			The samples.
+	 * @param offset		Index of the blue-byte of the first pixel.
+	 * @param pixelStride	Number of bytes per pixel.
+	 * @param count			Number of pixels, at most 64.
+	 *
+	 * @return				The bits, the first pixel being bit 0.
+	 */
+	long extract(byte[] data, int offset, int pixelStride, int count) {
+		long word = 0;
+		for (int i = 0, index = offset    ;    i < count    ;    i++, index += pixelStride){
+			word |= (long) (data[index] & 1) << i;
+		}
+		return word;
+	}
+}
@@ -0,0 +1,329 @@
+package application.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Raster-engine operating directly on the memory-mapped pixel-data of an uncompressed 24- or 32-bit
+ * BMP-file, without decoding the file to an image. Every pixel starts with its blue-byte, rows are
+ * padded to four bytes and stored bottom-up (or top-down for a negative height). Changes are written
+ * to the file by commit(). Files beyond the size of a single mapping are mapped in several segments
+ * of whole rows.
+ *
+ * Java offers no public way to release a mapping before the buffer is garbage-collected; until then it
+ * occupies address-space and, on Windows, locks the file against moving or replacing it. close() therefore
+ * forces and releases the segments through the cleaner of the JDK (sun.misc.Unsafe on JDK 9 or later,
+ * sun.misc.Cleaner on JDK 8). If neither is accessible, the segments are left to the garbage-collector.
+ * The engine must not be used after close().
+ */
+class MappedBmpRasterEngine extends RasterEngine implements Closeable {
+
+	private static final int	FILE_HEADER_SIZE	= 14;
+	private static final int	MIN_INFO_SIZE		= 40;
+	private static final int	BI_RGB				= 0;
+	private static final int	BI_BITFIELDS		= 3;
+	private static final int	BLUE_MASK			= 0xFF;
+	private static final int	MAX_SEGMENT_SIZE	= 1 << 30;
+
+	/** Releases a mapping immediately; NULL if the JDK provides no accessible way. */
+	private static final Consumer<ByteBuffer>	UNMAPPER	= createUnmapper();
+
+
+	private final FileChannel			channel;
+	private final boolean				writable;
+	private final MappedByteBuffer[]	segments;
+	private final int					rowsPerSegment;
+	private final int					rowStride;
+	private final int					bytesPerPixel;
+	private final boolean				bottomUp;
+
+
+
+	private MappedBmpRasterEngine(FileChannel channel, boolean writable, int width, int height, boolean bottomUp,
+			int bytesPerPixel, long pixelOffset) throws IOException {
+		super(width, height);
+		this.channel 		= channel;
+		this.writable 		= writable;
+		this.bottomUp 		= bottomUp;
+		this.bytesPerPixel 	= bytesPerPixel;
+		this.rowStride 		= (width * bytesPerPixel + 3) & ~3;
+		this.rowsPerSegment = Math.max(1, MAX_SEGMENT_SIZE / rowStride);
+
+		FileChannel.MapMode mode = writable  ?  FileChannel.MapMode.READ_WRITE  :  FileChannel.MapMode.READ_ONLY;
+		segments = new MappedByteBuffer[(height + rowsPerSegment - 1) / rowsPerSegment];
+		for (int s = 0    ;    s < segments.length    ;    s++){
+			int rows = Math.min(rowsPerSegment, height - s * rowsPerSegment);
+			segments[s] = channel.map(mode, pixelOffset + (long) s * rowsPerSegment * rowStride, (long) rows * rowStride);
+		}
+	}
+
+
+	/**
+	 * Maps the pixel-data of a BMP-file.
+	 *
+	 * @param file			The BMP-file.
+	 * @param writable		True to map the file for manipulation, false for reading only.
+	 *
+	 * @return				The engine, or NULL if the file is no uncompressed 24- or 32-bit BMP.
+	 *
+	 * @throws IOException	Thrown if the file can't be accessed.
+	 */
+	static MappedBmpRasterEngine open(File file, boolean writable) throws IOException {
+		FileChannel channel = writable
+				?  FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)
+				:  FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			MappedBmpRasterEngine engine = fromHeader(channel, writable);
+			if (engine == null)
+				channel.close();
+			return engine;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Checks whether a file is a BMP supported by this engine, i.e. uncompressed with 24 or 32 bits per pixel.
+	 *
+	 * @param file			The file to check.
+	 *
+	 * @return				True if the file can be mapped.
+	 */
+	static boolean isSupported(File file) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return readHeader(channel) != null;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+
+
+	private static MappedBmpRasterEngine fromHeader(FileChannel channel, boolean writable) throws IOException {
+		ByteBuffer header = readHeader(channel);
+		if (header == null)
+			return null;
+
+		int width = header.getInt(FILE_HEADER_SIZE + 4);
+		int height = header.getInt(FILE_HEADER_SIZE + 8);
+		int bytesPerPixel = header.getShort(FILE_HEADER_SIZE + 14) / Byte.SIZE;
+		long pixelOffset = header.getInt(10) & 0xFFFFFFFFL;
+
+		return new MappedBmpRasterEngine(channel, writable, width, Math.abs(height), height > 0, bytesPerPixel, pixelOffset);
+	}
+
+
+	/**
+	 * Reads and validates the file- and info-header.
+	 *
+	 * @return				The headers in little-endian order, or NULL if the format isn't supported.
+	 */
+	private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE + MIN_INFO_SIZE + 12).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining()    &&    channel.read(header, header.position()) > 0){
+			// read until the buffer is full or the file ends
+		}
+		if (header.position() < FILE_HEADER_SIZE + MIN_INFO_SIZE    ||    header.get(0) != 'B'    ||    header.get(1) != 'M')
+			return null;
+
+		int infoSize = header.getInt(FILE_HEADER_SIZE);
+		int width = header.getInt(FILE_HEADER_SIZE + 4);
+		int height = header.getInt(FILE_HEADER_SIZE + 8);
+		int bitCount = header.getShort(FILE_HEADER_SIZE + 14);
+		int compression = header.getInt(FILE_HEADER_SIZE + 16);
+		long pixelOffset = header.getInt(10) & 0xFFFFFFFFL;
+
+		if (infoSize < MIN_INFO_SIZE    ||    width < 1    ||    height == 0    ||    height == Integer.MIN_VALUE)
+			return null;
+		if (bitCount != 24    &&    bitCount != 32)
+			return null;
+		if (compression == BI_BITFIELDS){
+			if (bitCount != 32    ||    header.position() < FILE_HEADER_SIZE + MIN_INFO_SIZE + 12
+					||    header.getInt(FILE_HEADER_SIZE + MIN_INFO_SIZE + 8) != BLUE_MASK)
+				return null;
+		} else if (compression != BI_RGB){
+			return null;
+		}
+
+		long rowStride = ((long) width * (bitCount / Byte.SIZE) + 3) & ~3L;
+		if (rowStride > MAX_SEGMENT_SIZE    ||    pixelOffset + rowStride * Math.abs((long) height) > channel.size())
+			return null;
+		return header;
+	}
+
+
+
+	/**
+	 * The segment holding a row.
+	 */
+	private ByteBuffer segment(int y) {
+		int fileRow = bottomUp  ?  height - 1 - y  :  y;
+		return segments[fileRow / rowsPerSegment];
+	}
+
+
+	/**
+	 * Position of the blue-byte of the first pixel of a row within its segment.
+	 */
+	private int rowStart(int y) {
+		int fileRow = bottomUp  ?  height - 1 - y  :  y;
+		return (fileRow % rowsPerSegment) * rowStride;
+	}
+
+
+
+	@Override
+	int getBlueBit(int x, int y) {
+		return segment(y).get(rowStart(y) + x * bytesPerPixel) & 1;
+	}
+
+
+	@Override
+	void clearBlueBit(int x, int y) {
+		ByteBuffer segment = segment(y);
+		int index = rowStart(y) + x * bytesPerPixel;
+		segment.put(index, (byte) (segment.get(index) & ~1));
+	}
+
+
+	@Override
+	void addBlueBit(int x, int y, int bit) {
+		ByteBuffer segment = segment(y);
+		int index = rowStart(y) + x * bytesPerPixel;
+		segment.put(index, (byte) (segment.get(index) | bit));
+	}
+
+
+	@Override
+	void setBlueBit(int x, int y, int bit) {
+		ByteBuffer segment = segment(y);
+		int index = rowStart(y) + x * bytesPerPixel;
+		segment.put(index, (byte) ((segment.get(index) & ~1) | bit));
+	}
+
+
+	@Override
+	boolean isRowIndependent() {
+		return true;
+	}
+
+
+	@Override
+	void readBlueBits(int y, int stepSize, long[] destination) {
+		ByteBuffer segment = segment(y);
+		int count = lineLength(width, stepSize);
+		int index = rowStart(y);
+		int indexStep = bytesPerPixel * stepSize;
+
+		for (int w = 0    ;    w < wordsPerLine(width, stepSize)    ;    w++){
+			long word = 0;
+			int limit = Math.min(Long.SIZE, count - w * Long.SIZE);
+			for (int i = 0    ;    i < limit    ;    i++, index += indexStep){
+				word |= (long) (segment.get(index) & 1) << i;
+			}
+			destination[w] = word;
+		}
+	}
+
+
+	@Override
+	void readBlueBitColumns(int[] columns, int first, int count, int stepSize, long[][] destination) {
+		clearLines(destination, count, wordsPerLine(height, stepSize));
+
+		for (int y = 0, i = 0    ;    y < height    ;    y += stepSize, i++){
+			ByteBuffer segment = segment(y);
+			int shift = i & (Long.SIZE - 1);
+			int word = i >>> 6;
+			int rowStart = rowStart(y);
+			for (int c = 0    ;    c < count    ;    c++){
+				destination[c][word] |= (long) (segment.get(rowStart + columns[first + c] * bytesPerPixel) & 1) << shift;
+			}
+		}
+	}
+
+
+	/**
+	 * Writes all manipulations to the file.
+	 */
+	@Override
+	void commit() {
+		if (! writable)
+			return;
+		for (MappedByteBuffer segment : segments){
+			if (segment != null)
+				segment.force();
+		}
+	}
+
+
+	/**
+	 * Forces all manipulations to the file, releases the mappings and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			commit();
+			for (int s = 0    ;    s < segments.length    ;    s++){
+				MappedByteBuffer segment = segments[s];
+				segments[s] = null;
+				unmap(segment);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+
+
+	private static void unmap(ByteBuffer segment) {
+		if (UNMAPPER == null    ||    segment == null)
+			return;
+		try {
+			UNMAPPER.accept(segment);
+		} catch (RuntimeException e) {
+			// left to the garbage-collector
+		}
+	}
+
+
+	private static Consumer<ByteBuffer> createUnmapper() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			return buffer -> invoke(invokeCleaner, unsafe, buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// no JDK 9 or later
+		}
+
+		try {
+			Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			return buffer -> invoke(clean, invoke(cleaner, buffer));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+
+	private static Object invoke(Method method, Object target, Object... arguments) {
+		try {
+			return method.invoke(target, arguments);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package application.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Reads, writes and erases watermarks in uncompressed 24- and 32-bit BMP-files by memory-mapping their
+ * pixel-data. No image is decoded or encoded: only the blue-bytes of the mapped file are touched, and
+ * the result stays a BMP-file. The operations are equivalent to those of the WatermarkCodec on the
+ * decoded image.
+ */
+public class MappedBmpWatermarker {
+
+	private final WatermarkCodec	codec;
+
+
+
+	/**
+	 * Constructor. Creates a watermarker using the default codec.
+	 */
+	public MappedBmpWatermarker() {
+		this(ReadWriteUtilities.getDefaultCodec());
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param codec			The codec providing watermark-indicator and step-size.
+	 */
+	public MappedBmpWatermarker(WatermarkCodec codec) {
+		this.codec = codec;
+	}
+
+
+
+	/**
+	 * Checks whether a file is a BMP that can be processed by memory-mapping.
+	 *
+	 * @param file			The file to check.
+	 *
+	 * @return				True for uncompressed BMP-files with 24 or 32 bits per pixel.
+	 */
+	public static boolean isSupported(File file) {
+		return MappedBmpRasterEngine.isSupported(file);
+	}
+
+
+
+	/**
+	 * Writes a watermark to a BMP-file. If output differs from input, the input is copied first
+	 * and only the copy is manipulated.
+	 *
+	 * @param watermark		The watermark-payload as string.
+	 * @param input			The BMP-file to watermark.
+	 * @param output		The destination BMP-file; may be the same as input.
+	 *
+	 * @return				The result holding payload and redundancy, or NULL in case of failure.
+	 *
+	 * @throws IOException	Thrown if the file can't be accessed or isn't supported.
+	 */
+	public WatermarkResult write(String watermark, File input, File output) throws IOException {
+		try (MappedBmpRasterEngine engine = openForWriting(input, output)) {
+			return codec.write(watermark, engine);
+		}
+	}
+
+
+	/**
+	 * Writes a compiled watermark to a BMP-file. If output differs from input, the input is copied
+	 * first and only the copy is manipulated.
+	 *
+	 * @param watermark		The watermark, compiled by a codec using the same watermark-indicator.
+	 * @param input			The BMP-file to watermark.
+	 * @param output		The destination BMP-file; may be the same as input.
+	 *
+	 * @return				The result holding payload and redundancy, or NULL in case of failure.
+	 *
+	 * @throws IOException	Thrown if the file can't be accessed or isn't supported.
+	 */
+	public WatermarkResult write(CompiledWatermark watermark, File input, File output) throws IOException {
+		try (MappedBmpRasterEngine engine = openForWriting(input, output)) {
+			return codec.write(watermark, engine);
+		}
+	}
+
+
+	/**
+	 * Removes a watermark from a BMP-file. If output differs from input, the input is copied first
+	 * and only the copy is manipulated.
+	 *
+	 * @param input			The BMP-file to clear.
+	 * @param output		The destination BMP-file; may be the same as input.
+	 *
+	 * @return				An empty result, or NULL in case of failure.
+	 *
+	 * @throws IOException	Thrown if the file can't be accessed or isn't supported.
+	 */
+	public WatermarkResult erase(File input, File output) throws IOException {
+		try (MappedBmpRasterEngine engine = openForWriting(input, output)) {
+			return codec.erase(engine);
+		}
+	}
+
+
+	/**
+	 * Reads a watermark from a BMP-file. Only the inspected rows and columns are paged in.
+	 *
+	 * @param file			The BMP-file.
+	 *
+	 * @return				The result holding the payload (empty if no watermark is present)
+	 * 						and its location, or NULL in case of failure.
+	 *
+	 * @throws IOException	Thrown if the file can't be accessed or isn't supported.
+	 */
+	public WatermarkResult read(File file) throws IOException {
+		try (MappedBmpRasterEngine engine = open(file, false)) {
+			return codec.read(engine);
+		}
+	}
+
+
+
+	private static MappedBmpRasterEngine openForWriting(File input, File output) throws IOException {
+		if (! input.getAbsoluteFile().equals(output.getAbsoluteFile())){
+			if (! isSupported(input))
+				throw new IOException("Unsupported BMP-format.");
+			Files.copy(input.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return open(output, true);
+	}
+
+
+	private static MappedBmpRasterEngine open(File file, boolean writable) throws IOException {
+		MappedBmpRasterEngine engine = MappedBmpRasterEngine.open(file, writable);
+		if (engine == null)
+			throw new IOException("Unsupported BMP-format.");
+		return engine;
+	}
+}
@@ -0,0 +1,24 @@
+package application.data;
+
+/**
+ * Receives a record of every finished operation, once registered with the Instrumentation.
+ * Listeners are called on the thread that performed the operation, so they have to be thread-safe
+ * and should return quickly.
+ */
+public interface OperationListener {
+
+	/**
+	 * Called when an operation starts, on the thread that will report it as finished. Operations may be
+	 * nested, and an operation failing with an exception is started but never reported as finished.
+	 *
+	 * @param start			The start in nanoseconds, as reported by OperationRecord.getStartNanos().
+	 */
+	default void operationStarted(long start) {
+	}
+
+
+	/**
+	 * @param record		The finished operation.
+	 */
+	void operationFinished(OperationRecord record);
+}
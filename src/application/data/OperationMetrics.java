@@ -0,0 +1,82 @@
+package application.data;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A listener summing up the records of every type of operation: count, total and maximum duration,
+ * pixels and bytes, and for reading the scanned lines and the hits. Safe for concurrent operations.
+ */
+public class OperationMetrics implements OperationListener {
+
+	private final Map<OperationType, Counters>	counters	= new EnumMap<>(OperationType.class);
+
+
+
+	public OperationMetrics() {
+		for (OperationType type : OperationType.values()){
+			counters.put(type, new Counters());
+		}
+	}
+
+
+
+	@Override
+	public void operationFinished(OperationRecord record) {
+		Counters counter = counters.get(record.getType());
+		counter.count.increment();
+		counter.nanos.add(record.getDurationNanos());
+		counter.pixels.add(record.getPixels());
+		counter.bytes.add(record.getBytes());
+		counter.lines.add(record.getRowsScanned() + record.getColumnsScanned());
+		if (record.isHit())
+			counter.hits.increment();
+
+		synchronized (counter) {
+			counter.maxNanos = Math.max(counter.maxNanos, record.getDurationNanos());
+		}
+	}
+
+
+	public long getCount(OperationType type)			{	return counters.get(type).count.sum();		}
+	public long getTotalNanos(OperationType type)		{	return counters.get(type).nanos.sum();		}
+	public long getPixels(OperationType type)			{	return counters.get(type).pixels.sum();		}
+	public long getBytes(OperationType type)			{	return counters.get(type).bytes.sum();		}
+
+
+
+	/**
+	 * @return		One line per operation that occurred at least once.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<OperationType, Counters> entry : counters.entrySet()){
+			Counters counter = entry.getValue();
+			long count = counter.count.sum();
+			if (count == 0)
+				continue;
+
+			text.append(String.format("%-5s %6d x  total %9.1f ms  mean %8.2f ms  max %8.2f ms  %,15d pixels  %,15d bytes",
+					entry.getKey(), count, counter.nanos.sum() / 1e6, counter.nanos.sum() / 1e6 / count,
+					counter.maxNanos / 1e6, counter.pixels.sum(), counter.bytes.sum()));
+			if (entry.getKey() == OperationType.READ)
+				text.append(String.format("  %,d lines  %d hits", counter.lines.sum(), counter.hits.sum()));
+			text.append(System.lineSeparator());
+		}
+		return text.toString();
+	}
+
+
+
+	private static class Counters {
+		final LongAdder		count		= new LongAdder();
+		final LongAdder		nanos		= new LongAdder();
+		final LongAdder		pixels		= new LongAdder();
+		final LongAdder		bytes		= new LongAdder();
+		final LongAdder		lines		= new LongAdder();
+		final LongAdder		hits		= new LongAdder();
+		long				maxNanos;
+	}
+}
@@ -0,0 +1,55 @@
+package application.data;
+
+/**
+ * Immutable measurement of a single operation. Values not applying to the operation are zero,
+ * e.g. the scanned lines of a write or the bytes of an operation on an image in memory.
+ */
+public class OperationRecord {
+
+	private final OperationType   type;
+	private final long            startNanos;
+	private final long            durationNanos;
+	private final long            pixels;
+	private final long            bytes;
+	private final int             rowsScanned;
+	private final int             columnsScanned;
+	private final boolean         hit;
+	private final ReadDirection   readDirection;
+
+
+
+	OperationRecord(OperationType type, long startNanos, long durationNanos, long pixels, long bytes, int rowsScanned,
+			int columnsScanned, boolean hit, ReadDirection readDirection) {
+		this.type 				= type;
+		this.startNanos 		= startNanos;
+		this.durationNanos 		= durationNanos;
+		this.pixels 			= pixels;
+		this.bytes 				= bytes;
+		this.rowsScanned 		= rowsScanned;
+		this.columnsScanned 	= columnsScanned;
+		this.hit 				= hit;
+		this.readDirection 		= readDirection;
+	}
+
+
+
+	public OperationType	getType()						{	return type;					}
+	public long				getStartNanos()					{	return startNanos;				}
+	public long				getDurationNanos()				{	return durationNanos;			}
+	public long				getPixels()						{	return pixels;					}
+	public long				getBytes()						{	return bytes;					}
+	public int				getRowsScanned()				{	return rowsScanned;				}
+	public int				getColumnsScanned()				{	return columnsScanned;			}
+	public boolean			isHit()							{	return hit;						}
+	public ReadDirection	getReadDirection()				{	return readDirection;			}
+
+
+
+	@Override
+	public String toString() {
+		String text = type + "[" + (durationNanos / 1000) + " us, " + pixels + " pixels, " + bytes + " bytes";
+		if (type == OperationType.READ)
+			text += ", " + rowsScanned + " rows, " + columnsScanned + " columns, " + (hit  ?  "hit " + readDirection  :  "miss");
+		return text + "]";
+	}
+}
@@ -0,0 +1,15 @@
+package application.data;
+
+/**
+ * The operations reported to the Instrumentation.
+ * >> LOAD decodes an image-file.
+ * >> WRITE, READ and ERASE are the operations of a WatermarkCodec or StreamingWatermarker.
+ * >> SAVE encodes an image to a file.
+ */
+public enum OperationType {
+	LOAD,
+	WRITE,
+	READ,
+	ERASE,
+	SAVE
+}
@@ -0,0 +1,117 @@
+package application.data;
+
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Raster-engine for images storing one pixel per integer (TYPE_INT_ARGB and TYPE_INT_RGB).
+ * The position of the blue-LSB is taken from the bit-offsets of the sample-model.
+ */
+class PackedIntRasterEngine extends RasterEngine {
+
+	private final int[]		data;
+	private final int		base;
+	private final int		scanlineStride;
+	private final int		blueShift;
+	private final int		blueMask;
+	private final LsbKernel	kernel			= LsbKernel.get();
+
+
+
+	PackedIntRasterEngine(WritableRaster raster) {
+		super(raster.getWidth(), raster.getHeight());
+		SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+		DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+
+		data 			= buffer.getData();
+		scanlineStride 	= sampleModel.getScanlineStride();
+		blueShift 		= sampleModel.getBitOffsets()[BLUE_BAND];
+		blueMask 		= 1 << blueShift;
+		base 			= buffer.getOffset() + sampleModel.getOffset(
+								raster.getMinX() - raster.getSampleModelTranslateX(),
+								raster.getMinY() - raster.getSampleModelTranslateY());
+	}
+
+
+
+	@Override
+	int getBlueBit(int x, int y) {
+		return (data[base + y * scanlineStride + x] & blueMask) == 0  ?  0  :  1;
+	}
+
+
+	@Override
+	void clearBlueBit(int x, int y) {
+		data[base + y * scanlineStride + x] &= ~blueMask;
+	}
+
+
+	@Override
+	void addBlueBit(int x, int y, int bit) {
+		if (bit != 0)
+			data[base + y * scanlineStride + x] |= blueMask;
+	}
+
+
+	@Override
+	void setBlueBit(int x, int y, int bit) {
+		int index = base + y * scanlineStride + x;
+		data[index] = (data[index] & ~blueMask) | (bit << blueShift);
+	}
+
+
+	/**
+	 * Contiguous rows are handed to the LSB-kernel as a whole.
+	 */
+	@Override
+	void writeBlueBits(int y, int stepSize, int[] bits, int start) {
+		if (stepSize == 1)
+			kernel.embed(data, base + y * scanlineStride, width, bits, start, blueShift);
+		else
+			super.writeBlueBits(y, stepSize, bits, start);
+	}
+
+
+	@Override
+	boolean isRowIndependent() {
+		return true;
+	}
+
+
+	@Override
+	void readBlueBits(int y, int stepSize, long[] destination) {
+		int count = lineLength(width, stepSize);
+		int index = base + y * scanlineStride;
+
+		for (int w = 0    ;    w < wordsPerLine(width, stepSize)    ;    w++){
+			int limit = Math.min(Long.SIZE, count - w * Long.SIZE);
+			if (stepSize == 1){
+				destination[w] = kernel.extract(data, index, limit, blueShift);
+				index += limit;
+				continue;
+			}
+
+			long word = 0;
+			for (int i = 0    ;    i < limit    ;    i++, index += stepSize){
+				word |= (long) ((data[index] >>> blueShift) & 1) << i;
+			}
+			destination[w] = word;
+		}
+	}
+
+
+	@Override
+	void readBlueBitColumns(int[] columns, int first, int count, int stepSize, long[][] destination) {
+		clearLines(destination, count, wordsPerLine(height, stepSize));
+
+		for (int y = 0, i = 0    ;    y < height    ;    y += stepSize, i++){
+			int shift = i & (Long.SIZE - 1);
+			int word = i >>> 6;
+			int rowStart = base + y * scanlineStride;
+			for (int c = 0    ;    c < count    ;    c++){
+				destination[c][word] |= (long) ((data[rowStart + columns[first + c]] >>> blueShift) & 1) << shift;
+			}
+		}
+	}
+}
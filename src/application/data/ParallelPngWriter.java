@@ -0,0 +1,190 @@
+package application.data;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Saves images as PNG using the PngEncoder, which compresses on all cores. Images with an alpha-channel
+ * are written as RGBA, all others as RGB; the color-values, including the blue-LSBs carrying a watermark,
+ * are stored exactly. The encoder only writes 8-bit truecolor, so all other images (e.g. gray, palette
+ * or 16-bit images) are written by ImageIO instead, keeping their format. A writer is immutable and can
+ * be shared between threads.
+ */
+public class ParallelPngWriter {
+
+	public static final int			DEFAULT_COMPRESSION_LEVEL	= 6;
+	public static final PngFilter	DEFAULT_FILTER				= PngFilter.ADAPTIVE;
+
+	private static final int		OUTPUT_BUFFER_SIZE			= 1 << 16;
+
+
+	private final int				level;
+	private final PngFilter			filter;
+	private final ExecutorService	executor;
+
+
+
+	/**
+	 * Constructor. Creates a writer with default compression-level and filter, compressing on
+	 * the common fork-join-pool.
+	 */
+	public ParallelPngWriter() {
+		this(DEFAULT_COMPRESSION_LEVEL, DEFAULT_FILTER, ForkJoinPool.commonPool());
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param level			Compression-level from 0 (none) to 9 (best).
+	 * @param filter		The scanline-filter.
+	 * @param executor		Executor for compressing, or NULL to compress on the calling thread.
+	 */
+	public ParallelPngWriter(int level, PngFilter filter, ExecutorService executor) {
+		if (level < 0    ||    level > 9)
+			throw new IllegalArgumentException("Compression-level must be between 0 and 9.");
+
+		this.level 		= level;
+		this.filter 	= filter;
+		this.executor 	= executor;
+	}
+
+
+
+	public int			getLevel()							{	return level;		}
+	public PngFilter	getFilter()							{	return filter;		}
+
+
+
+	/**
+	 * Saves an image as PNG-file.
+	 *
+	 * @param image			The image to save.
+	 * @param file			The destination file.
+	 *
+	 * @throws IOException	Thrown if file access fails.
+	 */
+	public void write(BufferedImage image, File file) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), OUTPUT_BUFFER_SIZE)) {
+			write(image, out);
+		}
+	}
+
+
+	/**
+	 * Writes an image as PNG to a stream. The stream is not closed.
+	 *
+	 * @param image			The image to write.
+	 * @param out			The destination stream.
+	 *
+	 * @throws IOException	Thrown if writing fails.
+	 */
+	public void write(BufferedImage image, OutputStream out) throws IOException {
+		if (! isSupported(image)){
+			if (! ImageIO.write(image, "png", out))
+				throw new IOException("No PNG-writer for images of type " + image.getType() + ".");
+			return;
+		}
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		boolean alpha = image.getColorModel().hasAlpha();
+
+		PngEncoder encoder = createEncoder(out, width, height, alpha);
+		byte[] row = new byte[encoder.getBytesPerRow()];
+		int[] pixels = new int[width];
+
+		for (int y = 0    ;    y < height    ;    y++){
+			readScanline(image, y, alpha, pixels, row);
+			encoder.writeRow(row);
+		}
+		encoder.finish();
+	}
+
+
+	/**
+	 * @param image			The image to write.
+	 *
+	 * @return				True if the image is 8-bit truecolor and thus written by the PngEncoder
+	 * 						without changing its format; false if it is written by ImageIO.
+	 */
+	public static boolean isSupported(BufferedImage image) {
+		switch (image.getType()){
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_BGR:
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+
+	/**
+	 * Creates an encoder with the configuration of this writer, e.g. for writing an image band by band.
+	 *
+	 * @param out			The destination stream.
+	 * @param width			Width of the image in pixels.
+	 * @param height		Height of the image in pixels.
+	 * @param alpha			True for RGBA-, false for RGB-scanlines.
+	 *
+	 * @return				The encoder.
+	 *
+	 * @throws IOException	Thrown if writing the header fails.
+	 */
+	public PngEncoder createEncoder(OutputStream out, int width, int height, boolean alpha) throws IOException {
+		return new PngEncoder(out, width, height, alpha, level, filter, executor);
+	}
+
+
+
+	/**
+	 * Converts one row of an image to a PNG-scanline. Packed-int and interleaved-byte images are copied
+	 * through the raster in bulk, since their data-elements already hold the samples in PNG-order.
+	 * All other images are converted through their color-model, which is exact for 8-bit truecolor only.
+	 *
+	 * @param image			The image.
+	 * @param y				Index of the row.
+	 * @param alpha			True for an RGBA-, false for an RGB-scanline.
+	 * @param pixels		Buffer for one row of ARGB-values.
+	 * @param row			Destination of the scanline.
+	 */
+	static void readScanline(BufferedImage image, int y, boolean alpha, int[] pixels, byte[] row) {
+		Raster raster = image.getRaster();
+		int width = pixels.length;
+
+		switch (image.getType()){
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+				raster.getDataElements(0, y, width, 1, row);
+				return;
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+				raster.getDataElements(0, y, width, 1, pixels);
+				break;
+			default:
+				image.getRGB(0, y, width, 1, pixels, 0, width);
+				break;
+		}
+
+		for (int x = 0, i = 0    ;    x < width    ;    x++){
+			int argb = pixels[x];
+			row[i++] = (byte) (argb >>> ReadWriteUtilities.BITSHIFT_RED);
+			row[i++] = (byte) (argb >>> ReadWriteUtilities.BITSHIFT_GREEN);
+			row[i++] = (byte) argb;
+			if (alpha)
+				row[i++] = (byte) (argb >>> ReadWriteUtilities.BITSHIFT_ALPHA);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package application.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conversion between watermark-texts and their bytes. Texts are embedded as UTF-8. Watermarks of
+ * earlier versions stored one byte per character, i.e. ISO-8859-1 for all characters up to U+00FF;
+ * payloads that aren't valid UTF-8 are therefore decoded as ISO-8859-1.
+ */
+final class PayloadText {
+
+	private PayloadText() {
+	}
+
+
+
+	/**
+	 * @param text			The watermark-text.
+	 *
+	 * @return				Its UTF-8-bytes.
+	 */
+	static byte[] encode(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+
+	/**
+	 * @param bytes			The bytes of a payload.
+	 *
+	 * @return				The text, decoded as UTF-8 or, failing that, as ISO-8859-1.
+	 */
+	static String decode(byte[] bytes) {
+		try {
+			return StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT)
+					.decode(ByteBuffer.wrap(bytes))
+					.toString();
+		} catch (CharacterCodingException e) {
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
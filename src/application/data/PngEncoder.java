@@ -0,0 +1,297 @@
+package application.data;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streaming encoder for 8-bit truecolor PNG-images (RGB or RGBA, not interlaced).
+ *
+ * Scanlines are filtered as they arrive and collected in chunks of about 128 KB. Every chunk is
+ * deflated independently on the executor, primed with the last 32 KB of the preceding chunk as
+ * dictionary, and ended with a sync-flush. The compressed chunks are concatenated in order, giving
+ * a single standard zlib-stream, while compression runs on all cores. The Adler-checksum of the
+ * zlib-stream is computed on the calling thread.
+ *
+ * Only a bounded number of chunks is compressed at a time; writing a row blocks until the oldest
+ * chunk is finished, if necessary. Memory is therefore independent of the image-height.
+ */
+public class PngEncoder {
+
+	private static final byte[]	SIGNATURE			= {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+	private static final int	BIT_DEPTH			= 8;
+	private static final int	COLOR_TYPE_RGB		= 2;
+	private static final int	COLOR_TYPE_RGBA		= 6;
+
+	private static final int	CHUNK_SIZE			= 128 * 1024;
+	private static final int	DICTIONARY_SIZE		= 32 * 1024;
+
+
+	private final DataOutputStream		out;
+	private final int					width;
+	private final int					height;
+	private final int					bytesPerPixel;
+	private final int					level;
+	private final PngFilter				filter;
+	private final ExecutorService		executor;
+	private final int					maxPendingChunks;
+
+	private final Adler32				adler			= new Adler32();
+	private final CRC32					crc				= new CRC32();
+	private final Deque<Future<byte[]>>	pending			= new ArrayDeque<>();
+
+	private byte[]						previousRow;
+	private byte[]						chunk;
+	private int							chunkFill;
+	private byte[]						dictionary;
+	private int							rowsWritten;
+	private boolean						headerWritten;
+
+
+
+	/**
+	 * Constructor. Writes the PNG-signature and the header-chunk.
+	 *
+	 * @param out			The stream receiving the PNG-data; it is not closed by the encoder.
+	 * @param width			Width of the image in pixels.
+	 * @param height		Height of the image in pixels.
+	 * @param alpha			True for RGBA-, false for RGB-scanlines.
+	 * @param level			Compression-level from 0 (none) to 9 (best).
+	 * @param filter		The scanline-filter.
+	 * @param executor		Executor for compressing the chunks, or NULL to compress on the calling thread.
+	 *
+	 * @throws IOException	Thrown if writing fails.
+	 */
+	public PngEncoder(OutputStream out, int width, int height, boolean alpha, int level, PngFilter filter,
+			ExecutorService executor) throws IOException {
+		if (width < 1    ||    height < 1)
+			throw new IllegalArgumentException("Image-dimensions must be positive.");
+		if (level < Deflater.NO_COMPRESSION    ||    level > Deflater.BEST_COMPRESSION)
+			throw new IllegalArgumentException("Compression-level must be between 0 and 9.");
+
+		this.out 				= new DataOutputStream(out);
+		this.width 				= width;
+		this.height 			= height;
+		this.bytesPerPixel 		= alpha  ?  4  :  3;
+		this.level 				= level;
+		this.filter 			= filter;
+		this.executor 			= executor;
+		this.maxPendingChunks 	= 2 * Runtime.getRuntime().availableProcessors();
+
+		int rowSize = width * bytesPerPixel + 1;
+		this.chunk = new byte[Math.max(1, CHUNK_SIZE / rowSize) * rowSize];
+
+		ByteBuffer header = ByteBuffer.allocate(13);
+		header.putInt(width).putInt(height);
+		header.put((byte) BIT_DEPTH).put((byte) (alpha  ?  COLOR_TYPE_RGBA  :  COLOR_TYPE_RGB));
+		this.out.write(SIGNATURE);
+		writeChunk("IHDR", header.array());
+	}
+
+
+
+	public int		getBytesPerRow()					{	return width * bytesPerPixel;		}
+
+
+
+	/**
+	 * Adds the next scanline of the image.
+	 *
+	 * @param row			The raw scanline with getBytesPerRow() bytes (R, G, B[, A] per pixel).
+	 *
+	 * @throws IOException	Thrown if writing a finished chunk fails.
+	 */
+	public void writeRow(byte[] row) throws IOException {
+		if (rowsWritten == height)
+			throw new IllegalStateException("All rows have been written.");
+
+		int rowSize = row.length + 1;
+		if (chunkFill + rowSize > chunk.length)
+			submitChunk(false);
+
+		filter.filter(row, previousRow, bytesPerPixel, chunk, chunkFill);
+		adler.update(chunk, chunkFill, rowSize);
+		chunkFill += rowSize;
+
+		if (previousRow == null)
+			previousRow = new byte[row.length];
+		System.arraycopy(row, 0, previousRow, 0, row.length);
+		rowsWritten++;
+	}
+
+
+	/**
+	 * Compresses the remaining rows and writes the end of the image. The stream is flushed but not closed.
+	 *
+	 * @throws IOException	Thrown if not all rows have been written, or if writing fails.
+	 */
+	public void finish() throws IOException {
+		if (rowsWritten != height)
+			throw new IOException("Only " + rowsWritten + " of " + height + " rows have been written.");
+
+		submitChunk(true);
+		while (! pending.isEmpty()){
+			writeCompressedData(pending.poll(), pending.isEmpty());
+		}
+		writeChunk("IEND");
+		out.flush();
+	}
+
+
+
+	/**
+	 * Hands the current chunk over to the executor and starts a new one. The dictionary for the
+	 * next chunk is taken from the end of the current one.
+	 *
+	 * @param last			True for the final chunk of the image.
+	 *
+	 * @throws IOException	Thrown if writing a finished chunk fails.
+	 */
+	private void submitChunk(boolean last) throws IOException {
+		byte[] data = chunk;
+		int length = chunkFill;
+		byte[] primer = dictionary;
+
+		FutureTask<byte[]> task = new FutureTask<>(() -> deflate(data, length, primer, last));
+		if (executor == null)
+			task.run();
+		else
+			executor.execute(task);
+		pending.add(task);
+
+		dictionary = nextDictionary(primer, data, length);
+		chunk = new byte[chunk.length];
+		chunkFill = 0;
+
+		while (pending.size() > maxPendingChunks){
+			writeCompressedData(pending.poll(), false);
+		}
+	}
+
+
+	private byte[] deflate(byte[] data, int length, byte[] primer, boolean last) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			if (primer != null)
+				deflater.setDictionary(primer);
+			deflater.setInput(data, 0, length);
+
+			byte[] buffer = new byte[Math.max(1024, length / 2)];
+			int size = 0;
+			if (last){
+				deflater.finish();
+				while (! deflater.finished()){
+					if (size == buffer.length)
+						buffer = Arrays.copyOf(buffer, buffer.length * 2);
+					size += deflater.deflate(buffer, size, buffer.length - size);
+				}
+			} else {
+				int produced;
+				do {
+					if (size == buffer.length)
+						buffer = Arrays.copyOf(buffer, buffer.length * 2);
+					produced = deflater.deflate(buffer, size, buffer.length - size, Deflater.SYNC_FLUSH);
+					size += produced;
+				} while (size == buffer.length    ||    ! deflater.needsInput());
+			}
+			return Arrays.copyOf(buffer, size);
+		} finally {
+			deflater.end();
+		}
+	}
+
+
+	private static byte[] nextDictionary(byte[] previous, byte[] data, int length) {
+		if (length >= DICTIONARY_SIZE)
+			return Arrays.copyOfRange(data, length - DICTIONARY_SIZE, length);
+
+		int kept = (previous == null)  ?  0  :  Math.min(previous.length, DICTIONARY_SIZE - length);
+		byte[] next = new byte[kept + length];
+		if (kept > 0)
+			System.arraycopy(previous, previous.length - kept, next, 0, kept);
+		System.arraycopy(data, 0, next, kept, length);
+		return next;
+	}
+
+
+	/**
+	 * Waits for a compressed chunk and writes it as IDAT-chunk. The zlib-header precedes the first,
+	 * the Adler-checksum follows the last chunk.
+	 *
+	 * @param future		The compression-task.
+	 * @param last			True for the final chunk of the image.
+	 *
+	 * @throws IOException	Thrown if compression or writing fails.
+	 */
+	private void writeCompressedData(Future<byte[]> future, boolean last) throws IOException {
+		byte[] compressed;
+		try {
+			compressed = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Compression failed.", e.getCause());
+		}
+
+		byte[] zlibHeader = headerWritten  ?  new byte[0]  :  new byte[] {0x78, (byte) zlibLevelFlags()};
+		byte[] checksum = last  ?  ByteBuffer.allocate(4).putInt((int) adler.getValue()).array()  :  new byte[0];
+		headerWritten = true;
+		writeChunk("IDAT", zlibHeader, compressed, checksum);
+	}
+
+
+	/**
+	 * The second byte of the zlib-header, holding the compression-level and the header check-bits.
+	 */
+	private int zlibLevelFlags() {
+		if (level <= 1)
+			return 0x01;
+		if (level <= 5)
+			return 0x5E;
+		if (level == 6)
+			return 0x9C;
+		return 0xDA;
+	}
+
+
+	/**
+	 * Writes a chunk whose data is the concatenation of the given parts.
+	 *
+	 * @param type			The chunk-type, e.g. "IDAT".
+	 * @param parts			The parts of the chunk-data.
+	 *
+	 * @throws IOException	Thrown if writing fails.
+	 */
+	private void writeChunk(String type, byte[]... parts) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		int length = 0;
+		crc.reset();
+		crc.update(typeBytes);
+		for (byte[] part : parts){
+			crc.update(part);
+			length += part.length;
+		}
+
+		out.writeInt(length);
+		out.write(typeBytes);
+		for (byte[] part : parts){
+			out.write(part);
+		}
+		out.writeInt((int) crc.getValue());
+	}
+
+
+}
@@ -0,0 +1,99 @@
+package application.data;
+
+/**
+ * The scanline-filters of the PNG-format. ADAPTIVE chooses, for every row, the filter yielding the
+ * smallest sum of absolute differences, which usually compresses best.
+ */
+public enum PngFilter {
+	NONE		(0),
+	SUB			(1),
+	UP			(2),
+	AVERAGE		(3),
+	PAETH		(4),
+	ADAPTIVE	(-1);
+
+
+	private final int	type;
+
+
+
+	private PngFilter(int type) {
+		this.type = type;
+	}
+
+
+
+	/**
+	 * Filters one scanline and writes the filter-type followed by the filtered bytes.
+	 *
+	 * @param row			The raw scanline.
+	 * @param previous		The raw preceding scanline, or NULL for the first row.
+	 * @param bpp			Bytes per pixel.
+	 * @param destination	Array receiving row.length + 1 bytes.
+	 * @param offset		Position of the filter-type within destination.
+	 */
+	void filter(byte[] row, byte[] previous, int bpp, byte[] destination, int offset) {
+		int selected = type;
+
+		if (this == ADAPTIVE){
+			long smallest = Long.MAX_VALUE;
+			for (int candidate = NONE.type    ;    candidate <= PAETH.type    ;    candidate++){
+				long sum = 0;
+				for (int i = 0    ;    i < row.length    &&    sum < smallest    ;    i++){
+					sum += Math.abs((byte) filterByte(candidate, row, previous, bpp, i));
+				}
+				if (sum < smallest){
+					smallest = sum;
+					selected = candidate;
+				}
+			}
+		}
+
+		destination[offset] = (byte) selected;
+		for (int i = 0    ;    i < row.length    ;    i++){
+			destination[offset + 1 + i] = (byte) filterByte(selected, row, previous, bpp, i);
+		}
+	}
+
+
+
+	/**
+	 * Computes a single filtered byte.
+	 *
+	 * @param type			The filter-type.
+	 * @param row			The raw scanline.
+	 * @param previous		The raw preceding scanline, or NULL for the first row.
+	 * @param bpp			Bytes per pixel.
+	 * @param i				Position within the scanline.
+	 *
+	 * @return				The filtered byte (only the lower 8 bits are significant).
+	 */
+	private static int filterByte(int type, byte[] row, byte[] previous, int bpp, int i) {
+		int raw   = row[i] & 0xFF;
+		int left  = (i >= bpp)  ?  row[i - bpp] & 0xFF  :  0;
+		int up    = (previous != null)  ?  previous[i] & 0xFF  :  0;
+		int upLeft = (previous != null    &&    i >= bpp)  ?  previous[i - bpp] & 0xFF  :  0;
+
+		switch (type){
+			case 1:		return raw - left;
+			case 2:		return raw - up;
+			case 3:		return raw - ((left + up) >>> 1);
+			case 4:		return raw - paethPredictor(left, up, upLeft);
+			default:	return raw;
+		}
+	}
+
+
+	private static int paethPredictor(int left, int up, int upLeft) {
+		int estimate = left + up - upLeft;
+		int distanceLeft = Math.abs(estimate - left);
+		int distanceUp = Math.abs(estimate - up);
+		int distanceUpLeft = Math.abs(estimate - upLeft);
+
+		if (distanceLeft <= distanceUp    &&    distanceLeft <= distanceUpLeft)
+			return left;
+		if (distanceUp <= distanceUpLeft)
+			return up;
+		return upLeft;
+	}
+}
@@ -0,0 +1,264 @@
+package application.data;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes 8-bit, non-interlaced RGB- and RGBA-PNG-files scanline by scanline, inflating the image-data
+ * as a stream. Only two scanlines and the current band are held in memory. Ancillary chunks are skipped.
+ */
+class PngScanlineReader extends BandSource {
+
+	private static final byte[]	SIGNATURE			= {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+	private static final int	IHDR				= 0x49484452;
+	private static final int	IDAT				= 0x49444154;
+	private static final int	IEND				= 0x49454E44;
+	private static final int	BUFFER_SIZE			= 1 << 16;
+
+
+	private final DataInputStream	file;
+	private final Inflater			inflater;
+	private final DataInputStream	scanlines;
+	private final int				width;
+	private final int				height;
+	private final boolean			alpha;
+	private final int				bytesPerPixel;
+
+	private byte[]					current;
+	private byte[]					previous;
+	private BufferedImage			band;
+
+
+
+	private PngScanlineReader(DataInputStream file, int width, int height, boolean alpha) {
+		this.file 			= file;
+		this.width 			= width;
+		this.height 		= height;
+		this.alpha 			= alpha;
+		this.bytesPerPixel 	= alpha  ?  4  :  3;
+		this.current 		= new byte[width * bytesPerPixel];
+		this.previous 		= new byte[width * bytesPerPixel];
+		this.inflater 		= new Inflater();
+		this.scanlines 		= new DataInputStream(new InflaterInputStream(new ImageDataStream(file), inflater, BUFFER_SIZE));
+	}
+
+
+	/**
+	 * Opens a PNG-file, if its format is supported.
+	 *
+	 * @param source		The image-file.
+	 *
+	 * @return				The reader, or NULL if the file is no PNG of 8-bit RGB or RGBA without interlacing.
+	 *
+	 * @throws IOException	Thrown if the file can't be read.
+	 */
+	static PngScanlineReader open(File source) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source), BUFFER_SIZE));
+		try {
+			byte[] signature = new byte[SIGNATURE.length];
+			in.readFully(signature);
+			if (! Arrays.equals(signature, SIGNATURE)    ||    in.readInt() != 13    ||    in.readInt() != IHDR){
+				in.close();
+				return null;
+			}
+
+			int width = in.readInt();
+			int height = in.readInt();
+			int bitDepth = in.readUnsignedByte();
+			int colorType = in.readUnsignedByte();
+			int compression = in.readUnsignedByte();
+			int filter = in.readUnsignedByte();
+			int interlace = in.readUnsignedByte();
+			in.readInt();
+
+			if (width < 1    ||    height < 1    ||    bitDepth != 8    ||    (colorType != 2    &&    colorType != 6)
+					||    compression != 0    ||    filter != 0    ||    interlace != 0){
+				in.close();
+				return null;
+			}
+			return new PngScanlineReader(in, width, height, colorType == 6);
+		} catch (EOFException e) {
+			in.close();
+			return null;
+		}
+	}
+
+
+
+	@Override
+	int getWidth() {
+		return width;
+	}
+
+
+	@Override
+	int getHeight() {
+		return height;
+	}
+
+
+	@Override
+	BufferedImage nextBand(int rows) throws IOException {
+		if (band == null    ||    band.getHeight() < rows)
+			band = new BufferedImage(width, rows, alpha  ?  BufferedImage.TYPE_INT_ARGB  :  BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) band.getRaster().getDataBuffer()).getData();
+
+		for (int y = 0    ;    y < rows    ;    y++){
+			readScanline();
+			int offset = y * width;
+			for (int x = 0, i = 0    ;    x < width    ;    x++, i += bytesPerPixel){
+				int argb = (current[i] & 0xFF) << ReadWriteUtilities.BITSHIFT_RED
+						| (current[i + 1] & 0xFF) << ReadWriteUtilities.BITSHIFT_GREEN
+						| (current[i + 2] & 0xFF);
+				if (alpha)
+					argb |= (current[i + 3] & 0xFF) << ReadWriteUtilities.BITSHIFT_ALPHA;
+				pixels[offset + x] = argb;
+			}
+		}
+
+		return (rows == band.getHeight())  ?  band  :  band.getSubimage(0, 0, width, rows);
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		// An Inflater passed to InflaterInputStream isn't ended by the stream, its native memory is released here.
+		inflater.end();
+		file.close();
+	}
+
+
+
+	/**
+	 * Inflates the next scanline and reverses its filter. The preceding scanline is kept for the
+	 * filters referring to the row above.
+	 *
+	 * @throws IOException	Thrown if the image-data is truncated or uses an unknown filter.
+	 */
+	private void readScanline() throws IOException {
+		byte[] swap = previous;
+		previous = current;
+		current = swap;
+
+		int type = scanlines.readUnsignedByte();
+		scanlines.readFully(current);
+
+		for (int i = 0    ;    i < current.length    ;    i++){
+			int left = (i >= bytesPerPixel)  ?  current[i - bytesPerPixel] & 0xFF  :  0;
+			int up = previous[i] & 0xFF;
+			int upLeft = (i >= bytesPerPixel)  ?  previous[i - bytesPerPixel] & 0xFF  :  0;
+
+			switch (type){
+				case 0:		break;
+				case 1:		current[i] += left;									break;
+				case 2:		current[i] += up;									break;
+				case 3:		current[i] += (left + up) >>> 1;					break;
+				case 4:		current[i] += paethPredictor(left, up, upLeft);		break;
+				default:	throw new IOException("Unknown PNG-filter " + type + ".");
+			}
+		}
+	}
+
+
+	private static int paethPredictor(int left, int up, int upLeft) {
+		int estimate = left + up - upLeft;
+		int distanceLeft = Math.abs(estimate - left);
+		int distanceUp = Math.abs(estimate - up);
+		int distanceUpLeft = Math.abs(estimate - upLeft);
+
+		if (distanceLeft <= distanceUp    &&    distanceLeft <= distanceUpLeft)
+			return left;
+		if (distanceUp <= distanceUpLeft)
+			return up;
+		return upLeft;
+	}
+
+
+
+	/**
+	 * The concatenated data of the IDAT-chunks, i.e. the zlib-stream of the image. All other chunks are skipped.
+	 */
+	private static class ImageDataStream extends InputStream {
+
+		private final DataInputStream	in;
+		private int						remaining;
+		private boolean					insideChunk;
+		private boolean					ended;
+
+
+		ImageDataStream(DataInputStream in) {
+			this.in = in;
+		}
+
+
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			return (read(single, 0, 1) < 0)  ?  -1  :  single[0] & 0xFF;
+		}
+
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			while (remaining == 0){
+				if (ended    ||    ! nextImageDataChunk())
+					return -1;
+			}
+			int count = in.read(buffer, offset, Math.min(length, remaining));
+			if (count < 0)
+				throw new EOFException("PNG-file is truncated.");
+			remaining -= count;
+			return count;
+		}
+
+
+		/**
+		 * Moves to the next IDAT-chunk.
+		 *
+		 * @return				False if the image-data has ended.
+		 */
+		private boolean nextImageDataChunk() throws IOException {
+			if (insideChunk)
+				in.readInt();
+
+			while (true){
+				int length = in.readInt();
+				int type = in.readInt();
+
+				if (type == IDAT){
+					insideChunk = true;
+					remaining = length;
+					return true;
+				}
+				if (type == IEND    ||    insideChunk){
+					ended = true;
+					return false;
+				}
+				skipFully(length + 4L);
+			}
+		}
+
+
+		private void skipFully(long count) throws IOException {
+			while (count > 0){
+				long skipped = in.skip(count);
+				if (skipped <= 0){
+					if (in.read() < 0)
+						throw new EOFException("PNG-file is truncated.");
+					skipped = 1;
+				}
+				count -= skipped;
+			}
+		}
+	}
+}
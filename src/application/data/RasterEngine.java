@@ -0,0 +1,260 @@
+package application.data;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Access to the least significant bit of the blue channel of an image.
+ * For the common layouts (TYPE_INT_ARGB, TYPE_INT_RGB, TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR) the
+ * backing array of the image-raster is manipulated directly, so no objects are created per pixel
+ * and no final copy of the raster is required. All other images are handled through their color-model.
+ */
+abstract class RasterEngine {
+
+	protected static final int	BLUE_BAND		= 2;
+
+
+	protected final int			width;
+	protected final int			height;
+
+
+
+	protected RasterEngine(int width, int height) {
+		this.width	= width;
+		this.height	= height;
+	}
+
+
+
+	/**
+	 * Selects the engine suitable for the layout of the given image.
+	 * The direct engines are only used if the raster consists of a single bank and a sample-model
+	 * of the expected kind; everything else falls back to the color-model based engine.
+	 *
+	 * @param image		The image to be accessed.
+	 *
+	 * @return			An engine operating on the raster of the image.
+	 */
+	static RasterEngine forImage(BufferedImage image) {
+		WritableRaster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		boolean singleBank = buffer.getNumBanks() == 1;
+
+		switch (image.getType()){
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_RGB:
+				if (singleBank    &&    raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+					return new PackedIntRasterEngine(raster);
+				break;
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+				if (singleBank    &&    raster.getSampleModel() instanceof ComponentSampleModel)
+					return new InterleavedByteRasterEngine(raster);
+				break;
+			default:
+				break;
+		}
+
+		return new ColorModelRasterEngine(image);
+	}
+
+
+
+	/**
+	 * Number of bits in a line of the given size, if only every stepSize-th pixel is read.
+	 *
+	 * @param size			Number of pixels in the line.
+	 * @param stepSize		The distance between two read pixels.
+	 *
+	 * @return				Number of bits.
+	 */
+	static int lineLength(int size, int stepSize) {
+		return (size + stepSize - 1) / stepSize;
+	}
+
+
+	/**
+	 * Number of long-elements holding a packed line of the given size.
+	 *
+	 * @param size			Number of pixels in the line.
+	 * @param stepSize		The distance between two read pixels.
+	 *
+	 * @return				Number of long-elements.
+	 */
+	static int wordsPerLine(int size, int stepSize) {
+		return (lineLength(size, stepSize) + Long.SIZE - 1) / Long.SIZE;
+	}
+
+
+
+	int getWidth() {
+		return width;
+	}
+
+
+	int getHeight() {
+		return height;
+	}
+
+
+
+	/**
+	 * Returns the least significant bit of the blue-value of a pixel.
+	 *
+	 * @param x		Horizontal position of the pixel.
+	 * @param y		Vertical position of the pixel.
+	 *
+	 * @return		Either 0 or 1.
+	 */
+	abstract int getBlueBit(int x, int y);
+
+
+	/**
+	 * Decreases an odd blue-value of a pixel by one; even blue-values remain.
+	 *
+	 * @param x		Horizontal position of the pixel.
+	 * @param y		Vertical position of the pixel.
+	 */
+	abstract void clearBlueBit(int x, int y);
+
+
+	/**
+	 * Adds a bit to the blue-value of a pixel. The blue-value is expected to be even.
+	 *
+	 * @param x		Horizontal position of the pixel.
+	 * @param y		Vertical position of the pixel.
+	 * @param bit	Either 0 or 1.
+	 */
+	abstract void addBlueBit(int x, int y, int bit);
+
+
+	/**
+	 * Sets the least significant bit of the blue-value of a pixel, regardless of its previous value.
+	 * This combines clearBlueBit() and addBlueBit() in a single access to the pixel.
+	 *
+	 * @param x		Horizontal position of the pixel.
+	 * @param y		Vertical position of the pixel.
+	 * @param bit	Either 0 or 1.
+	 */
+	abstract void setBlueBit(int x, int y, int bit);
+
+
+	/**
+	 * Sets the least significant bits of the blue-values of one row to consecutive bits of a pattern.
+	 * Only every stepSize-th pixel is manipulated.
+	 *
+	 * @param y				Index of the row.
+	 * @param stepSize		The distance between two manipulated pixels.
+	 * @param bits			The pattern, one bit (0 or 1) per element.
+	 * @param start			Index of the bit for the first pixel; the pattern has to hold
+	 * 						lineLength(width, stepSize) elements from there on.
+	 */
+	void writeBlueBits(int y, int stepSize, int[] bits, int start) {
+		for (int x = 0, i = start    ;    x < width    ;    x += stepSize, i++){
+			setBlueBit(x, y, bits[i]);
+		}
+	}
+
+
+	/**
+	 * Reads the least significant bits of the blue-values of one row into a packed bit-array.
+	 * Bit i of the row is stored in element (i / 64) at bit-position (i % 64). Only every
+	 * stepSize-th pixel is read, so the row is compacted to (width / stepSize) bits.
+	 *
+	 * @param y				Index of the row.
+	 * @param stepSize		The distance between two read pixels.
+	 * @param destination	Array of at least wordsPerLine(width, stepSize) elements.
+	 */
+	void readBlueBits(int y, int stepSize, long[] destination) {
+		int count = lineLength(width, stepSize);
+
+		for (int w = 0, x = 0    ;    w < wordsPerLine(width, stepSize)    ;    w++){
+			long word = 0;
+			int limit = Math.min(Long.SIZE, count - w * Long.SIZE);
+			for (int i = 0    ;    i < limit    ;    i++, x += stepSize){
+				word |= (long) getBlueBit(x, y) << i;
+			}
+			destination[w] = word;
+		}
+	}
+
+
+
+	/**
+	 * Reads the least significant bits of the blue-values of a run of pixels into a packed bit-array,
+	 * e.g. the beginning of a row or the end of a column. Bit i of the run is the pixel at
+	 * (x + i * xStep, y + i * yStep), stored in element (i / 64) at bit-position (i % 64).
+	 *
+	 * @param x				Horizontal position of the first pixel.
+	 * @param y				Vertical position of the first pixel.
+	 * @param xStep			Horizontal distance between two read pixels.
+	 * @param yStep			Vertical distance between two read pixels.
+	 * @param count			Number of pixels to read.
+	 * @param destination	Array of at least (count + 63) / 64 elements.
+	 */
+	void readBlueBitRun(int x, int y, int xStep, int yStep, int count, long[] destination) {
+		Arrays.fill(destination, 0, (count + Long.SIZE - 1) / Long.SIZE, 0L);
+
+		for (int i = 0    ;    i < count    ;    i++, x += xStep, y += yStep){
+			if (getBlueBit(x, y) != 0)
+				destination[i >>> 6] |= 1L << (i & (Long.SIZE - 1));
+		}
+	}
+
+
+
+	/**
+	 * Reads the least significant bits of the blue-values of a tile of columns into packed bit-arrays.
+	 * The image is traversed row by row, so every row is touched once per tile instead of once per
+	 * column. Only every stepSize-th pixel of a column is read.
+	 *
+	 * @param columns		Horizontal positions of columns, in ascending order.
+	 * @param first			Index of the first column of the tile within columns.
+	 * @param count			Number of columns in the tile.
+	 * @param stepSize		The distance between two read pixels within a column.
+	 * @param destination	One array of at least wordsPerLine(height, stepSize) elements per column.
+	 */
+	void readBlueBitColumns(int[] columns, int first, int count, int stepSize, long[][] destination) {
+		clearLines(destination, count, wordsPerLine(height, stepSize));
+
+		for (int y = 0, i = 0    ;    y < height    ;    y += stepSize, i++){
+			long bit = 1L << (i & (Long.SIZE - 1));
+			int word = i >>> 6;
+			for (int c = 0    ;    c < count    ;    c++){
+				if (getBlueBit(columns[first + c], y) != 0)
+					destination[c][word] |= bit;
+			}
+		}
+	}
+
+
+	protected static void clearLines(long[][] lines, int count, int words) {
+		for (int c = 0    ;    c < count    ;    c++){
+			Arrays.fill(lines[c], 0, words, 0L);
+		}
+	}
+
+
+
+	/**
+	 * Tells whether different rows may be manipulated by different threads at the same time.
+	 * This holds for engines writing whole bytes or integers per pixel directly into an array.
+	 *
+	 * @return		True if rows are independent.
+	 */
+	boolean isRowIndependent() {
+		return false;
+	}
+
+
+	/**
+	 * Makes all manipulations visible in the image. Engines working on the backing array
+	 * of the raster have nothing to do here.
+	 */
+	void commit() {
+	}
+}
@@ -0,0 +1,15 @@
+package application.data;
+
+/**
+ * The ways in which a line of binary data is interpreted when searching for a watermark.
+ * >> REGULAR_FORWARD contains the bits from left to right as read from the image.
+ * >> REGULAR_BACKWARD contains the bits from right to left as read from the image.
+ * >> INVERTED_FORWARD contains the bits from left to right, but inverted (0 becomes 1 and vice versa).
+ * >> INVERTED_BACKWARD contains the bits from right to left, but inverted.
+ */
+public enum ReadDirection {
+	REGULAR_FORWARD,
+	REGULAR_BACKWARD,
+	INVERTED_FORWARD,
+	INVERTED_BACKWARD
+}
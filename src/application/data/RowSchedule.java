@@ -0,0 +1,150 @@
+package application.data;
+
+/**
+ * Selects the manipulated rows that actually carry a watermark. Rows are counted as manipulated rows,
+ * i.e. row index i denotes the image-row i * stepSize. The first row is always part of a schedule.
+ *
+ * A schedule with a stride of k selects every k-th row, or, if created with a key, a pseudo-random
+ * subset of rows with one of k rows on average. Writing, erasing and reading only touch the selected
+ * rows, so their cost and the redundancy of the watermark shrink by the factor k. A watermark is
+ * found by codecs with the same schedule; a keyed schedule hides the rows from readers lacking the key
+ * (apart from the first row).
+ *
+ * Schedules are immutable and can be shared by any number of codecs and threads.
+ */
+public final class RowSchedule {
+
+	/** The schedule selecting every manipulated row. */
+	public static final RowSchedule		EVERY_ROW		= new RowSchedule(1, 0, false);
+
+
+	private final int			stride;
+	private final long			key;
+	private final boolean		keyed;
+
+
+
+	private RowSchedule(int stride, long key, boolean keyed) {
+		this.stride 	= stride;
+		this.key 		= key;
+		this.keyed 		= keyed;
+	}
+
+
+	/**
+	 * Creates a schedule selecting every stride-th row.
+	 *
+	 * @param stride		The distance between two selected rows; 1 selects every row.
+	 *
+	 * @return				The schedule.
+	 *
+	 * @throws IllegalArgumentException		Thrown if the stride is not positive.
+	 */
+	public static RowSchedule every(int stride) {
+		if (stride < 1)
+			throw new IllegalArgumentException("Stride must be positive.");
+		return (stride == 1)  ?  EVERY_ROW  :  new RowSchedule(stride, 0, false);
+	}
+
+
+	/**
+	 * Creates a schedule selecting a pseudo-random subset of rows, one of stride rows on average.
+	 *
+	 * @param key			The key determining the subset.
+	 * @param stride		The average distance between two selected rows; 1 selects every row.
+	 *
+	 * @return				The schedule.
+	 *
+	 * @throws IllegalArgumentException		Thrown if the stride is not positive.
+	 */
+	public static RowSchedule keyed(long key, int stride) {
+		if (stride < 1)
+			throw new IllegalArgumentException("Stride must be positive.");
+		return (stride == 1)  ?  EVERY_ROW  :  new RowSchedule(stride, key, true);
+	}
+
+
+
+	public int			getStride()							{	return stride;					}
+	public boolean		isKeyed()							{	return keyed;					}
+	public boolean		isEveryRow()						{	return stride == 1;				}
+
+	long				getKey()							{	return key;						}
+
+
+
+	/**
+	 * @param row			Index of a manipulated row.
+	 *
+	 * @return				True if the row is selected.
+	 */
+	boolean includes(int row) {
+		if (row == 0    ||    stride == 1)
+			return true;
+		if (! keyed)
+			return row % stride == 0;
+		return (mix(key + row * 0x9E3779B97F4A7C15L) >>> 1) % stride == 0;
+	}
+
+
+	/**
+	 * @param rows			Number of manipulated rows.
+	 *
+	 * @return				Number of selected rows among the first rows.
+	 */
+	int count(int rows) {
+		if (! keyed)
+			return (rows + stride - 1) / stride;
+
+		int count = 0;
+		for (int row = 0    ;    row < rows    ;    row++){
+			if (includes(row))
+				count++;
+		}
+		return count;
+	}
+
+
+	/**
+	 * Returns every n-th of the selected rows, starting with the first row.
+	 *
+	 * @param rows			Number of manipulated rows.
+	 * @param every			Distance between two returned rows, counting selected rows only.
+	 *
+	 * @return				The indices of the returned rows, in ascending order.
+	 */
+	int[] rows(int rows, int every) {
+		int[] selected = new int[(count(rows) + every - 1) / every];
+		if (! keyed){
+			for (int i = 0    ;    i < selected.length    ;    i++){
+				selected[i] = i * every * stride;
+			}
+			return selected;
+		}
+
+		for (int row = 0, s = 0, i = 0    ;    row < rows    &&    i < selected.length    ;    row++){
+			if (! includes(row))
+				continue;
+			if (s++ % every == 0)
+				selected[i++] = row;
+		}
+		return selected;
+	}
+
+
+	/**
+	 * Finalizer of SplitMix64, spreading consecutive inputs over all bits.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+
+
+	@Override
+	public String toString() {
+		return keyed  ?  "keyed(1/" + stride + ")"  :  "every(" + stride + ")";
+	}
+}
@@ -0,0 +1,272 @@
+package application.data;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Writes and erases watermarks in image-files too large to be decoded as a whole. The image is read
+ * in horizontal bands; each band is watermarked and immediately encoded as part of the PNG-output.
+ * The binary sequence continues from band to band exactly as it does over the rows of an image in
+ * memory, so the result is identical to loading, watermarking and saving the image. Memory depends
+ * on the width of the image and the band-size, not on its height.
+ *
+ * Only PNG-files of 8-bit RGB or RGBA without interlacing are read band by band, by a PngScanlineReader
+ * inflating the image-data once from start to end. All other files (BMP-, palette-, gray- or 16-bit
+ * PNG-files) are decoded as a whole and saved in their own format, exactly as without streaming.
+ */
+public class StreamingWatermarker {
+
+	/** Default number of pixels per band (16 MB of pixel-data). */
+	public static final int		DEFAULT_BAND_PIXELS		= 1 << 22;
+
+
+	private final WatermarkCodec		codec;
+	private final ParallelPngWriter		writer;
+	private final int					bandPixels;
+
+
+
+	/**
+	 * Constructor. Creates a watermarker using the default codec and PNG-writer.
+	 */
+	public StreamingWatermarker() {
+		this(ReadWriteUtilities.getDefaultCodec(), new ParallelPngWriter(), DEFAULT_BAND_PIXELS);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param codec			The codec providing watermark-indicator and step-size.
+	 * @param writer		The PNG-writer used for the output.
+	 * @param bandPixels	Approximate number of pixels per band; a band holds at least one row.
+	 */
+	public StreamingWatermarker(WatermarkCodec codec, ParallelPngWriter writer, int bandPixels) {
+		if (bandPixels < 1)
+			throw new IllegalArgumentException("Band-size must be positive.");
+
+		this.codec 			= codec;
+		this.writer 		= writer;
+		this.bandPixels 	= bandPixels;
+	}
+
+
+
+	/**
+	 * Writes a watermark to an image-file and saves the result as PNG.
+	 * Input and output may be the same file.
+	 *
+	 * @param watermark		The watermark-payload as string.
+	 * @param input			The PNG- or BMP-file to watermark.
+	 * @param output		The destination PNG-file.
+	 *
+	 * @return				The result holding payload and redundancy.
+	 *
+	 * @throws IOException					Thrown if reading or writing fails.
+	 * @throws IllegalArgumentException		Thrown if a row is too short for a row-aligned watermark.
+	 */
+	public WatermarkResult write(String watermark, File input, File output) throws IOException {
+		return write(codec.compile(watermark), input, output);
+	}
+
+
+	/**
+	 * Writes a compiled watermark to an image-file and saves the result as PNG.
+	 * Input and output may be the same file.
+	 *
+	 * @param watermark		The watermark, compiled by a codec using the same watermark-indicator.
+	 * @param input			The PNG- or BMP-file to watermark.
+	 * @param output		The destination PNG-file.
+	 *
+	 * @return				The result holding payload and redundancy.
+	 *
+	 * @throws IOException					Thrown if reading or writing fails.
+	 * @throws IllegalArgumentException		Thrown if a row is too short for a row-aligned watermark;
+	 * 										the output is left untouched then.
+	 */
+	public WatermarkResult write(CompiledWatermark watermark, File input, File output) throws IOException {
+		codec.checkCompatible(watermark);
+
+		long start = Instrumentation.start();
+		long inputBytes = input.length();
+		BandCursor cursor = new BandCursor(watermark, codec);
+		long pixels = process(input, output, cursor);
+		Instrumentation.finish(OperationType.WRITE, start, pixels, inputBytes + output.length());
+		return WatermarkResult.written(watermark.getPayload(), cursor.redundancy);
+	}
+
+
+	/**
+	 * Removes a watermark from an image-file and saves the result as PNG.
+	 * Input and output may be the same file.
+	 *
+	 * @param input			The PNG- or BMP-file to clear.
+	 * @param output		The destination PNG-file.
+	 *
+	 * @return				An empty result.
+	 *
+	 * @throws IOException	Thrown if reading or writing fails.
+	 */
+	public WatermarkResult erase(File input, File output) throws IOException {
+		long start = Instrumentation.start();
+		long inputBytes = input.length();
+		long pixels = process(input, output, new BandCursor(null, codec));
+		Instrumentation.finish(OperationType.ERASE, start, pixels, inputBytes + output.length());
+		return WatermarkResult.empty();
+	}
+
+
+
+	/**
+	 * Reads the input band by band (or as a whole, if it can't be streamed), passes each band to the cursor
+	 * and encodes it. The output is written to a temporary file next to the destination, which replaces
+	 * the destination after completion.
+	 *
+	 * @param input			The image-file to read.
+	 * @param output		The destination PNG-file.
+	 * @param cursor		Manipulates the bands.
+	 *
+	 * @return				Number of pixels of the image.
+	 *
+	 * @throws IOException	Thrown if reading or writing fails.
+	 */
+	private long process(File input, File output, BandCursor cursor) throws IOException {
+		File directory = output.getAbsoluteFile().getParentFile();
+		File temporary = File.createTempFile(".watermarker", ".png", directory);
+		long pixelCount;
+
+		try (BandSource source = BandSource.open(input)) {
+			pixelCount = (source == null)  ?  processImage(input, temporary, cursor)  :  processBands(source, temporary, cursor);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temporary.toPath());
+			throw e;
+		}
+
+		Files.move(temporary.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return pixelCount;
+	}
+
+
+	private long processBands(BandSource source, File temporary, BandCursor cursor) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16)) {
+			int width = source.getWidth();
+			int height = source.getHeight();
+			int bandHeight = Math.max(1, bandPixels / width);
+
+			PngEncoder encoder = null;
+			boolean alpha = false;
+			byte[] row = null;
+			int[] pixels = new int[width];
+
+			for (int y = 0    ;    y < height    ;    y += bandHeight){
+				int rows = Math.min(bandHeight, height - y);
+				BufferedImage band = source.nextBand(rows);
+
+				if (encoder == null){
+					alpha = band.getColorModel().hasAlpha();
+					encoder = writer.createEncoder(out, width, height, alpha);
+					row = new byte[encoder.getBytesPerRow()];
+				}
+
+				cursor.apply(band, y);
+				for (int bandRow = 0    ;    bandRow < rows    ;    bandRow++){
+					ParallelPngWriter.readScanline(band, bandRow, alpha, pixels, row);
+					encoder.writeRow(row);
+				}
+			}
+			encoder.finish();
+			return (long) width * height;
+		}
+	}
+
+
+	/**
+	 * Decodes the whole image and passes it to the cursor as a single band.
+	 */
+	private long processImage(File input, File temporary, BandCursor cursor) throws IOException {
+		BufferedImage image = ImageIO.read(input);
+		if (image == null)
+			throw new IOException("Unsupported image-format.");
+
+		cursor.apply(image, 0);
+		writer.write(image, temporary);
+		return (long) image.getWidth() * image.getHeight();
+	}
+
+
+
+	/**
+	 * The position within the binary sequence, carried from one band to the next.
+	 */
+	private static class BandCursor {
+
+		private final CompiledWatermark		watermark;
+		private final int					stepSize;
+		private final boolean				rowAligned;
+		private final RowSchedule			schedule;
+		private int							currentBinary;
+		private int							redundancy;
+
+
+		/**
+		 * @param watermark	The compiled watermark, or NULL to only clear the blue-LSBs.
+		 * @param codec			The codec providing step-size, layout and row-schedule.
+		 */
+		BandCursor(CompiledWatermark watermark, WatermarkCodec codec) {
+			this.watermark 	= watermark;
+			this.stepSize 	= codec.getStepSize();
+			this.rowAligned = codec.getLayout() == WatermarkLayout.ROW_ALIGNED;
+			this.schedule 	= codec.getSchedule();
+		}
+
+
+		/**
+		 * Sets the blue-LSBs of a band to the next part of the binary sequence, following the order of
+		 * WatermarkCodec.writeDataToBlueChannel(), or clears them if there is no sequence. Only rows
+		 * whose index within the whole image is a multiple of the step-size, and which are selected by
+		 * the row-schedule, are manipulated.
+		 *
+		 * @param band			The band.
+		 * @param firstRow		Index of the first row of the band within the image.
+		 */
+		void apply(BufferedImage band, int firstRow) {
+			RasterEngine engine = RasterEngine.forImage(band);
+			int width = band.getWidth();
+			int height = band.getHeight();
+			int columns = RasterEngine.lineLength(width, stepSize);
+			int length = (watermark == null)  ?  0  :  watermark.getBinaries().length();
+			if (rowAligned    &&    columns < length)
+				throw new IllegalArgumentException("A row of " + columns + " manipulated pixels can't hold the "
+						+ length + " bits of a row-aligned watermark.");
+			int[] pattern = (watermark == null)  ?  null  :  watermark.patternFor(columns);
+
+			for (int y = (stepSize - firstRow % stepSize) % stepSize    ;    y < height    ;    y += stepSize){
+				if (! schedule.includes((firstRow + y) / stepSize))
+					continue;
+
+				if (watermark == null){
+					for (int x = 0    ;    x < width    ;    x += stepSize){
+						engine.clearBlueBit(x, y);
+					}
+					continue;
+				}
+
+				if (rowAligned)
+					currentBinary = 0;
+				engine.writeBlueBits(y, stepSize, pattern, currentBinary);
+				redundancy += (currentBinary + columns) / length;
+				currentBinary = (currentBinary + columns) % length;
+			}
+
+			engine.commit();
+		}
+	}
+}
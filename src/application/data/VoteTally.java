@@ -0,0 +1,147 @@
+package application.data;
+
+/**
+ * The votes of all copies of a watermark read so far, for a majority-vote over every bit of the
+ * sequence. Copies are aligned by their position within the sequence: offset 0 is the first bit of
+ * the indicator, so copies from different lines, and partial copies at the ends of a line, vote
+ * for the same bits.
+ *
+ * A tally holds copies of a single period and read-direction, read from either rows or columns; lines
+ * suggesting others are counted in tallies of their own, so a damaged size of a payload in the first
+ * line can't spoil the vote.
+ *
+ * The confidence of a bit with n votes and a majority leading by m votes is 1 - exp(-m * m / (2 * n)),
+ * i.e. one minus the Hoeffding-bound of the probability that the majority is wrong although more than
+ * half of the votes are correct. The confidence of the watermark is that of its least certain bit.
+ * Even unanimous votes of n intact copies only reach 1 - exp(-n / 2): 0.95 for 6 copies, 0.999 for 14.
+ */
+class VoteTally {
+
+	private final boolean[]			indicator;
+	private final int				period;
+	private final ReadDirection		direction;
+	private final boolean			columnWise;
+	private final int				lineIndex;
+
+	private final int[]				ones;
+	private final int[]				votes;
+
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param indicator			The bits of the watermark-indicator in reading order.
+	 * @param period			Length of the watermark-sequence in bits.
+	 * @param direction			The read-direction of the copies.
+	 * @param columnWise		True if the first line is a column.
+	 * @param lineIndex			Position of the first row or column.
+	 */
+	VoteTally(boolean[] indicator, int period, ReadDirection direction, boolean columnWise, int lineIndex) {
+		this.indicator 	= indicator;
+		this.period 	= period;
+		this.direction 	= direction;
+		this.columnWise = columnWise;
+		this.lineIndex 	= lineIndex;
+		this.ones 		= new int[period];
+		this.votes 		= new int[period];
+	}
+
+
+
+	int					getPeriod()						{	return period;					}
+	ReadDirection		getDirection()					{	return direction;				}
+	boolean				isColumnWise()					{	return columnWise;				}
+	int					getLineIndex()					{	return lineIndex;				}
+
+
+
+	/**
+	 * Adds every bit of a line as a vote. The copies in the line have to agree with period and
+	 * read-direction of the tally.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param length		Number of valid bits in the line.
+	 * @param phase			Position of the start of a copy in reading order.
+	 */
+	void add(long[] line, int length, int phase) {
+		for (int q = 0, offset = ((-phase) % period + period) % period    ;    q < length    ;    q++){
+			ones[offset] += WatermarkDetector.bitAt(line, length, direction, q);
+			votes[offset]++;
+			if (++offset == period)
+				offset = 0;
+		}
+	}
+
+
+
+	/**
+	 * @return				Number of votes for the bit with the fewest votes.
+	 */
+	int getCopies() {
+		int copies = Integer.MAX_VALUE;
+		for (int vote : votes){
+			copies = Math.min(copies, vote);
+		}
+		return copies;
+	}
+
+
+	/**
+	 * @return				The confidence of the least certain bit, from 0 (no votes or a tie) to 1.
+	 */
+	double getConfidence() {
+		double confidence = 1;
+		for (int i = 0    ;    i < period    ;    i++){
+			if (votes[i] == 0)
+				return 0;
+			double margin = Math.abs(2 * ones[i] - votes[i]);
+			confidence = Math.min(confidence, 1 - Math.exp(-margin * margin / (2.0 * votes[i])));
+		}
+		return confidence;
+	}
+
+
+	/**
+	 * Decodes the payload from the majority of every bit.
+	 *
+	 * @return				The payload, or NULL if a bit hasn't been read by any copy, or if the majority
+	 * 						doesn't form the indicator followed by the size of a payload filling the period.
+	 */
+	String getPayload() {
+		for (int i = 0    ;    i < period    ;    i++){
+			if (votes[i] == 0)
+				return null;
+		}
+
+		for (int j = 0    ;    j < indicator.length    ;    j++){
+			if ((majority(j) == 1) != indicator[j])
+				return null;
+		}
+
+		int unitStart = indicator.length;
+		int startOfPayload = unitStart + ReadWriteUtilities.LENGTH_OF_BINARY_UNIT;
+		if (readBinaryUnit(unitStart) != period - startOfPayload)
+			return null;
+
+		byte[] payload = new byte[(period - startOfPayload) / ReadWriteUtilities.LENGTH_OF_BINARY_UNIT];
+		for (int i = 0    ;    i < payload.length    ;    i++){
+			payload[i] = (byte) readBinaryUnit(startOfPayload + i * ReadWriteUtilities.LENGTH_OF_BINARY_UNIT);
+		}
+		return PayloadText.decode(payload);
+	}
+
+
+	private int readBinaryUnit(int start) {
+		int value = 0;
+		for (int i = 0    ;    i < ReadWriteUtilities.LENGTH_OF_BINARY_UNIT    ;    i++){
+			value = (value << 1) | majority(start + i);
+		}
+		return value;
+	}
+
+
+	private int majority(int offset) {
+		return (2 * ones[offset] > votes[offset])  ?  1  :  0;
+	}
+}
@@ -0,0 +1,644 @@
+package application.data;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads, writes and erases watermarks in the blue channel of images.
+ * A codec is configured once and is immutable afterwards. All state belonging to a single image
+ * is kept in an ImageContext local to the respective call, so one codec can be used by any
+ * number of threads at the same time, as long as they operate on different images.
+ *
+ * A codec created with a fork-join-pool processes images of at least PARALLEL_THRESHOLD pixels in
+ * parallel: writing and erasing in bands of rows, reading by racing the inspected lines. The bit
+ * written to a pixel only depends on its position, so the result is the same in either mode.
+ *
+ * The layout of written watermarks is chosen on construction (see WatermarkLayout). Reading doesn't
+ * depend on it: the beginnings of a few lines are checked first, which finds row-aligned watermarks
+ * (and the first row of cyclic ones) at once, before all inspected lines are searched.
+ *
+ * The density is chosen on construction as well: the step-size thins out rows and columns, a
+ * RowSchedule selects which of the remaining rows carry the watermark. Writing, erasing and reading
+ * follow the same schedule, so their cost scales with the selected rows rather than the image-area.
+ */
+public class WatermarkCodec {
+
+	/** Minimum number of pixels of an image to be processed in parallel. */
+	public static final int		PARALLEL_THRESHOLD		= 1 << 21;
+
+	/** Default confidence at which readByVote() stops reading further lines. */
+	public static final double	DEFAULT_MIN_CONFIDENCE	= 0.999;
+
+
+	private final String            watermarkIndicator;
+	private final byte[]            encodedIndicator;
+	private final int               stepSize;
+	private final ForkJoinPool      pool;
+	private final WatermarkLayout   layout;
+	private final RowSchedule       schedule;
+
+	private final WatermarkDetector   detector;
+
+
+
+	/**
+	 * Constructor. Creates a codec using the default watermark-indicator and step-size of
+	 * ReadWriteUtilities.
+	 */
+	public WatermarkCodec() {
+		this(ReadWriteUtilities.WATERMARK_INDICATOR, ReadWriteUtilities.STEPSIZE);
+	}
+
+
+	/**
+	 * Constructor. Creates a codec processing every image in the calling thread.
+	 *
+	 * @param watermarkIndicator	The sequence marking the start of a watermark.
+	 * @param stepSize				The distance between two manipulated pixels.
+	 */
+	public WatermarkCodec(String watermarkIndicator, int stepSize) {
+		this(watermarkIndicator, stepSize, null);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param watermarkIndicator	The sequence marking the start of a watermark.
+	 * @param stepSize				The distance between two manipulated pixels.
+	 * @param pool					Pool for processing large images in parallel, or NULL.
+	 */
+	public WatermarkCodec(String watermarkIndicator, int stepSize, ForkJoinPool pool) {
+		this(watermarkIndicator, stepSize, pool, WatermarkLayout.CYCLIC);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param watermarkIndicator	The sequence marking the start of a watermark.
+	 * @param stepSize				The distance between two manipulated pixels.
+	 * @param pool					Pool for processing large images in parallel, or NULL.
+	 * @param layout				The distribution of the bit-sequence over the rows when writing.
+	 */
+	public WatermarkCodec(String watermarkIndicator, int stepSize, ForkJoinPool pool, WatermarkLayout layout) {
+		this(watermarkIndicator, stepSize, pool, layout, RowSchedule.EVERY_ROW);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param watermarkIndicator	The sequence marking the start of a watermark.
+	 * @param stepSize				The distance between two manipulated pixels.
+	 * @param pool					Pool for processing large images in parallel, or NULL.
+	 * @param layout				The distribution of the bit-sequence over the rows when writing.
+	 * @param schedule				The manipulated rows carrying the watermark.
+	 */
+	public WatermarkCodec(String watermarkIndicator, int stepSize, ForkJoinPool pool, WatermarkLayout layout,
+			RowSchedule schedule) {
+		if (watermarkIndicator == null    ||    watermarkIndicator.equals(""))
+			throw new IllegalArgumentException("Watermark-indicator must not be empty.");
+		if (stepSize < 1)
+			throw new IllegalArgumentException("Step-size must be positive.");
+
+		this.watermarkIndicator 	= watermarkIndicator;
+		this.encodedIndicator 		= PayloadText.encode(watermarkIndicator);
+		this.stepSize 				= stepSize;
+		this.pool 					= pool;
+		this.layout 				= (layout == null)  ?  WatermarkLayout.CYCLIC  :  layout;
+		this.schedule 				= (schedule == null)  ?  RowSchedule.EVERY_ROW  :  schedule;
+		this.detector 				= new WatermarkDetector(BitSequence.of(encodedIndicator), stepSize, this.schedule, pool);
+	}
+
+
+
+	public String			getWatermarkIndicator()			{	return watermarkIndicator;		}
+	public int				getStepSize()					{	return stepSize;				}
+	public WatermarkLayout	getLayout()						{	return layout;					}
+	public RowSchedule		getSchedule()					{	return schedule;				}
+
+
+
+	/**
+	 * Returns a fingerprint of the configuration determining where watermarks are written and searched:
+	 * watermark-indicator, step-size, layout and row-schedule. Codecs with equal fingerprints find the
+	 * same watermarks in every image, so results can be shared between them, e.g. by a DetectionCache.
+	 * The fingerprint is a hash, so it doesn't reveal the key of a keyed row-schedule.
+	 *
+	 * @return				The fingerprint as hexadecimal string.
+	 */
+	public String getFingerprint() {
+		String configuration = watermarkIndicator + '\0' + stepSize + '\0' + layout + '\0'
+				+ schedule.getStride() + '\0' + schedule.isKeyed() + '\0' + schedule.getKey();
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(configuration.getBytes(StandardCharsets.UTF_8));
+			StringBuilder fingerprint = new StringBuilder();
+			for (int i = 0    ;    i < 16    ;    i++){
+				fingerprint.append(String.format("%02x", hash[i]));
+			}
+			return fingerprint.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
+	}
+
+
+
+	/**
+	 * Returns the number of bytes a watermark-text occupies as payload. Texts are embedded as UTF-8,
+	 * so characters beyond US-ASCII take more than one byte.
+	 *
+	 * @param watermark		The watermark-text.
+	 *
+	 * @return				The size of the payload in bytes; at most ReadWriteUtilities.MAX_PAYLOAD_SIZE can be written.
+	 */
+	public static int getPayloadSize(String watermark) {
+		return PayloadText.encode(watermark).length;
+	}
+
+
+
+	/**
+	 * Performs all necessary method-calls to write a given watermark to a given image.
+	 * The image is manipulated in place. Every manipulated pixel is touched once: its blue-LSB is set
+	 * to the bit of the watermark, so an existing watermark is replaced without erasing it first.
+	 *
+	 * @param watermark		The watermark-payload as string.
+	 * @param image			The image in which to place the watermark.
+	 *
+	 * @return				The result holding payload and redundancy, or NULL in case of failure, e.g. if
+	 * 						a row is too short for a row-aligned watermark.
+	 */
+	public WatermarkResult write(String watermark, BufferedImage image) {
+		try {
+			return write(compile(watermark), RasterEngine.forImage(image));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Writes a compiled watermark to a given image, e.g. the same watermark to every image of a batch.
+	 * The image is manipulated in place, exactly as by write(String, BufferedImage).
+	 *
+	 * @param watermark		The watermark, compiled by a codec using the same watermark-indicator.
+	 * @param image			The image in which to place the watermark.
+	 *
+	 * @return				The result holding payload and redundancy, or NULL in case of failure.
+	 */
+	public WatermarkResult write(CompiledWatermark watermark, BufferedImage image) {
+		try {
+			return write(watermark, RasterEngine.forImage(image));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Writes a watermark through a raster-engine, e.g. to a memory-mapped file.
+	 *
+	 * @param watermark		The watermark-payload as string.
+	 * @param engine		The engine providing access to the pixels.
+	 *
+	 * @return				The result holding payload and redundancy, or NULL in case of failure.
+	 */
+	WatermarkResult write(String watermark, RasterEngine engine) {
+		try {
+			return write(compile(watermark), engine);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Writes a compiled watermark through a raster-engine, e.g. to a memory-mapped file.
+	 *
+	 * @param watermark		The compiled watermark.
+	 * @param engine		The engine providing access to the pixels.
+	 *
+	 * @return				The result holding payload and redundancy, or NULL in case of failure.
+	 */
+	WatermarkResult write(CompiledWatermark watermark, RasterEngine engine) {
+		long start = Instrumentation.start();
+		try {
+			checkCompatible(watermark);
+			ImageContext context = new ImageContext(engine);
+			writeDataToBlueChannel(context, watermark);
+			Instrumentation.finish(OperationType.WRITE, start, manipulatedPixels(context), 0);
+			return WatermarkResult.written(watermark.getPayload(), context.redundancy);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Performs all necessary method-calls to read a watermark from an given image.
+	 * The beginnings and ends of a few rows and columns are checked first, which is all it takes for
+	 * a row-aligned watermark. Otherwise the rows of the image are searched. If they contain no
+	 * watermark, the columns are searched, to detect watermarks in rotated images. Only the inspected rows and columns are
+	 * read from the image, and the search ends with the first complete watermark.
+	 *
+	 * @param image			The image possibly containing a watermark.
+	 *
+	 * @return				The result holding the payload (empty if no watermark is present)
+	 * 						and its location, or NULL in case of failure.
+	 */
+	public WatermarkResult read(BufferedImage image) {
+		try {
+			return read(RasterEngine.forImage(image));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Reads a watermark through a raster-engine, e.g. from a memory-mapped file.
+	 *
+	 * @param engine		The engine providing access to the pixels.
+	 *
+	 * @return				The result holding the payload (empty if no watermark is present)
+	 * 						and its location, or NULL in case of failure.
+	 */
+	WatermarkResult read(RasterEngine engine) {
+		long start = Instrumentation.start();
+		try {
+			ImageContext context = new ImageContext(engine);
+			context.extendedStepSize = extendedStepSize(context);
+			String watermark = detector.searchAligned(context);
+
+			if (watermark == null)
+				watermark = detector.searchRows(context);
+			if (watermark == null)
+				watermark = detector.searchColumns(context);
+
+			WatermarkResult result = (watermark == null)
+					?  WatermarkResult.empty()
+					:  WatermarkResult.found(watermark, context.columnWise, context.lineIndex, context.readDirection);
+			Instrumentation.finishRead(start, context, stepSize, result);
+			return result;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Reads a watermark by a majority-vote over its copies, instead of trusting the first complete copy.
+	 * Whole lines are read, in the order of read(), and every bit of the watermark is decided by all
+	 * copies read so far, including damaged and partial ones. Reading stops as soon as the least
+	 * certain bit reaches the given confidence (see VoteTally). Intact copies count fully, so at 0.999
+	 * a single line suffices once it holds 14 copies (e.g. a row of 1800 pixels for a payload of 10
+	 * characters); narrower images, and images with flipped bits, e.g. after minor edits, are read
+	 * correctly from more lines.
+	 * If the confidence is never reached, the vote over all inspected lines is returned; its confidence
+	 * is below minConfidence then, so callers have to check getConfidence() before trusting the payload.
+	 *
+	 * @param image			The image possibly containing a watermark.
+	 * @param minConfidence	The confidence at which to stop, from 0 to 1, e.g. DEFAULT_MIN_CONFIDENCE.
+	 *
+	 * @return				The result holding the payload (empty if no watermark is present), its
+	 * 						location, the number of copies and the confidence, or NULL in case of failure.
+	 */
+	public WatermarkResult readByVote(BufferedImage image, double minConfidence) {
+		try {
+			return readByVote(RasterEngine.forImage(image), minConfidence);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Reads a watermark by a majority-vote through a raster-engine, e.g. from a memory-mapped file.
+	 *
+	 * @param engine		The engine providing access to the pixels.
+	 * @param minConfidence	The confidence at which to stop, from 0 to 1.
+	 *
+	 * @return				The result holding the payload (empty if no watermark is present), its
+	 * 						location, the number of copies and the confidence, or NULL in case of failure.
+	 */
+	WatermarkResult readByVote(RasterEngine engine, double minConfidence) {
+		long start = Instrumentation.start();
+		try {
+			ImageContext context = new ImageContext(engine);
+			context.extendedStepSize = extendedStepSize(context);
+			VoteTally tally = detector.searchVoted(context, minConfidence);
+
+			WatermarkResult result = (tally == null)
+					?  WatermarkResult.empty()
+					:  WatermarkResult.voted(tally.getPayload(), tally.isColumnWise(), tally.getLineIndex(),
+							tally.getDirection(), tally.getCopies(), tally.getConfidence());
+			Instrumentation.finishRead(start, context, stepSize, result);
+			return result;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Searches every selected row of a band taken from the top of an image, e.g. the leading rows
+	 * decoded by a WatermarkProbe. Columns are not searched, since the band holds only part of them.
+	 *
+	 * @param engine		The engine providing access to the pixels of the band.
+	 *
+	 * @return				The result holding the payload (empty if the band holds no watermark)
+	 * 						and its location, or NULL in case of failure.
+	 */
+	WatermarkResult readLeadingRows(RasterEngine engine) {
+		long start = Instrumentation.start();
+		try {
+			ImageContext context = new ImageContext(engine);
+			context.extendedStepSize = 1;
+			String watermark = detector.searchLeadingRows(context);
+
+			WatermarkResult result = (watermark == null)
+					?  WatermarkResult.empty()
+					:  WatermarkResult.found(watermark, false, context.lineIndex, context.readDirection);
+			Instrumentation.finishRead(start, context, stepSize, result);
+			return result;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Checks whether an image carries a given watermark by searching its first row only. The first row
+	 * is always manipulated and holds the sequence from its beginning, so directly after writing the
+	 * check succeeds unless the image can't hold the watermark (e.g. the palette of an indexed image
+	 * lacks the written colors, or the rows are too short). A failed check is no proof that the image
+	 * carries no watermark; read() searches the whole image.
+	 *
+	 * @param watermark		The expected watermark-payload.
+	 * @param image			The image to check.
+	 *
+	 * @return				True if the first row holds the watermark.
+	 */
+	public boolean verify(String watermark, BufferedImage image) {
+		try {
+			ImageContext context = new ImageContext(RasterEngine.forImage(image));
+			return watermark.equals(detector.searchRow(context, 0));
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+
+
+	/**
+	 * Performs all necessary actions to remove a watermark from a given image.
+	 * The image is manipulated in place.
+	 *
+	 * @param image			The image from which to remove a watermark.
+	 *
+	 * @return				An empty result, or NULL in case of failure.
+	 */
+	public WatermarkResult erase(BufferedImage image) {
+		try {
+			return erase(RasterEngine.forImage(image));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Removes a watermark through a raster-engine, e.g. from a memory-mapped file.
+	 *
+	 * @param engine		The engine providing access to the pixels.
+	 *
+	 * @return				An empty result, or NULL in case of failure.
+	 */
+	WatermarkResult erase(RasterEngine engine) {
+		long start = Instrumentation.start();
+		try {
+			ImageContext context = new ImageContext(engine);
+			resetBlueValues(context);
+			Instrumentation.finish(OperationType.ERASE, start, manipulatedPixels(context), 0);
+			return WatermarkResult.empty();
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+
+
+	/**
+	 * Prepares a watermark for being written to any number of images. The payload is encoded once,
+	 * and the compiled watermark keeps the patterns of the row-lengths it has been written with.
+	 *
+	 * @param payload		The watermark-payload.
+	 *
+	 * @return				The compiled watermark.
+	 *
+	 * @throws IllegalArgumentException		Thrown if the payload exceeds ReadWriteUtilities.MAX_PAYLOAD_SIZE bytes.
+	 */
+	public CompiledWatermark compile(String payload) {
+		return new CompiledWatermark(payload, watermarkIndicator, createWatermarkBinarySequence(payload));
+	}
+
+
+	/**
+	 * @param watermark		A compiled watermark to be written by this codec.
+	 *
+	 * @throws IllegalArgumentException		Thrown if the watermark has been compiled for another indicator.
+	 */
+	void checkCompatible(CompiledWatermark watermark) {
+		if (! watermarkIndicator.equals(watermark.getWatermarkIndicator()))
+			throw new IllegalArgumentException("The watermark has been compiled for another watermark-indicator.");
+	}
+
+
+	/**
+	 * Creating a watermark by concatenating the encoded watermark-indicator, the size of the payload
+	 * in bits and the UTF-8-bytes of the payload to a single bit-sequence.
+	 *
+	 * @param payload		The watermark-payload.
+	 *
+	 * @return				The watermark as bit-sequence.
+	 *
+	 * @throws IllegalArgumentException		Thrown if the payload exceeds ReadWriteUtilities.MAX_PAYLOAD_SIZE bytes.
+	 */
+	BitSequence createWatermarkBinarySequence(String payload) {
+		return BitSequence.forWatermark(encodedIndicator, PayloadText.encode(payload));
+	}
+
+
+	/**
+	 * The actual process of writing bits to the blue channel of an image.
+	 * The manipulated rows are processed in bands by writeRows(), in parallel if possible. The number of
+	 * redundancies is the number of complete writing-cycles over all selected rows; in the row-aligned
+	 * layout the number of complete sequences per row times the number of selected rows.
+	 * After manipulating all pixels the raster-engine commits the changes to the image.
+	 * A row-aligned watermark never continues in the next row, so rows shorter than the sequence are
+	 * rejected before any pixel is touched.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param watermark		The compiled watermark, providing the bit-sequence unrolled for the row-length.
+	 *
+	 * @throws Exception	Unspecified Exception in case something goes wrong.
+	 */
+	private void writeDataToBlueChannel(ImageContext context, CompiledWatermark watermark) throws Exception {
+		int columns = RasterEngine.lineLength(context.imageWidth, stepSize);
+		int rows = schedule.count(RasterEngine.lineLength(context.imageHeight, stepSize));
+
+		BitSequence binaries = watermark.getBinaries();
+		if (layout == WatermarkLayout.ROW_ALIGNED    &&    columns < binaries.length())
+			throw new IllegalArgumentException("A row of " + columns + " manipulated pixels can't hold the "
+					+ binaries.length() + " bits of a row-aligned watermark.");
+		int[] pattern = watermark.patternFor(columns);
+
+		forEachRowBand(context, (first, last) -> writeRows(context, binaries, pattern, first, last));
+		context.redundancy = (layout == WatermarkLayout.ROW_ALIGNED)
+				?  (int) Math.min(Integer.MAX_VALUE, (long) rows * (columns / binaries.length()))
+				:  (int) ((long) rows * columns / binaries.length());
+		context.engine.commit();
+	}
+
+
+	/**
+	 * Writes the bits to the selected rows of a band of manipulated rows.
+	 * The sequence is unrolled to the length of a cycle plus a row, once per row-length of a compiled
+	 * watermark, so each row is a contiguous slice of the pattern, starting at the position the
+	 * preceding selected rows have led to, or at the beginning in the row-aligned layout. The
+	 * raster-engine sets the blue-LSBs of the row to the slice, whatever their previous values.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param binaries		The watermark as bit-sequence.
+	 * @param pattern		The unrolled sequence.
+	 * @param first			Index of the first manipulated row of the band (counting every stepSize-th row).
+	 * @param last			Index following the last manipulated row of the band.
+	 */
+	private void writeRows(ImageContext context, BitSequence binaries, int[] pattern, int first, int last) {
+		RasterEngine engine = context.engine;
+		int columns = RasterEngine.lineLength(context.imageWidth, stepSize);
+		boolean aligned = layout == WatermarkLayout.ROW_ALIGNED;
+		int currentBinary = aligned  ?  0  :  (int) ((long) schedule.count(first) * columns % binaries.length());
+
+		for (int row = first    ;    row < last    ;    row++){
+			if (! schedule.includes(row))
+				continue;
+
+			engine.writeBlueBits(row * stepSize, stepSize, pattern, currentBinary);
+			if (! aligned)
+				currentBinary = (currentBinary + columns) % binaries.length();
+		}
+	}
+
+
+	/**
+	 * Setting the blue values of the image to values representing binary zeros.
+	 * Each pixel of the selected rows is accessed through two intertwined for-loops, band by band.
+	 * The raster-engine decreases odd blue-values by 1; the even blue-values remain.
+	 *
+	 * @param context		The context of the current operation.
+	 */
+	private void resetBlueValues(ImageContext context) {
+		RasterEngine engine = context.engine;
+
+		forEachRowBand(context, (first, last) -> {
+			for (int row = first    ;    row < last    ;    row++){
+				if (! schedule.includes(row))
+					continue;
+				for (int x = 0    ;    x < context.imageWidth    ;    x += stepSize){
+					engine.clearBlueBit(x, row * stepSize);
+				}
+			}
+		});
+		engine.commit();
+	}
+
+
+
+	/**
+	 * Distance between two inspected lines when reading, counting the lines selected by the schedule,
+	 * so about 100 rows are inspected whatever the stride of the schedule.
+	 */
+	private int extendedStepSize(ImageContext context) {
+		return Math.max(1, ((context.imageHeight / 100) + 1) / schedule.getStride());
+	}
+
+
+	/**
+	 * Number of pixels manipulated by writing or erasing: every stepSize-th pixel of the selected rows.
+	 */
+	private long manipulatedPixels(ImageContext context) {
+		return (long) RasterEngine.lineLength(context.imageWidth, stepSize)
+				* schedule.count(RasterEngine.lineLength(context.imageHeight, stepSize));
+	}
+
+
+
+	/**
+	 * Processes all manipulated rows of an image (every stepSize-th row). Large images are split into
+	 * bands processed on the pool, provided the raster-engine allows rows to be manipulated concurrently;
+	 * otherwise all rows are processed as a single band in the calling thread.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param band			The work on a band of rows.
+	 */
+	private void forEachRowBand(ImageContext context, RowBand band) {
+		int rows = RasterEngine.lineLength(context.imageHeight, stepSize);
+
+		if (pool == null    ||    ! context.engine.isRowIndependent()    ||    rows < 2
+				||    (long) context.imageWidth * context.imageHeight < PARALLEL_THRESHOLD){
+			band.process(0, rows);
+			return;
+		}
+
+		int grain = Math.max(1, rows / (4 * pool.getParallelism()));
+		pool.invoke(new RowBandTask(band, 0, rows, grain));
+	}
+
+
+
+	/**
+	 * Work on the manipulated rows first (inclusive) to last (exclusive).
+	 */
+	private interface RowBand {
+		void process(int first, int last);
+	}
+
+
+	/**
+	 * Splits a band of rows in halves until it is small enough to be processed by one task.
+	 */
+	private static class RowBandTask extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private final RowBand		band;
+		private final int			first;
+		private final int			last;
+		private final int			grain;
+
+		RowBandTask(RowBand band, int first, int last, int grain) {
+			this.band 	= band;
+			this.first 	= first;
+			this.last 	= last;
+			this.grain 	= grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (last - first <= grain){
+				band.process(first, last);
+				return;
+			}
+
+			int middle = (first + last) >>> 1;
+			invokeAll(new RowBandTask(band, first, middle, grain), new RowBandTask(band, middle, last, grain));
+		}
+	}
+}
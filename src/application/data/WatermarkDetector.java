@@ -0,0 +1,856 @@
+package application.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Searches packed lines of least significant bits for a watermark-indicator and isolates the
+ * payload following it, without ever building a textual representation of the bits.
+ *
+ * A line is held in a long-array, bit i of the line being element (i / 64) at bit-position (i % 64).
+ * The search is bit-parallel: for a block of 64 candidate start-positions, every bit of the indicator
+ * eliminates all candidates that don't match at the corresponding offset, so a block of random data
+ * is usually discarded after a handful of word-operations.
+ *
+ * The four values of ReadDirection are covered by searching the line for the indicator, for its
+ * inversion, and for the reversal of both.
+ *
+ * Lines are read lazily from the raster-engine: rows one at a time, columns in tiles of up to 64
+ * columns. Only the lines actually inspected are read, and none after the first hit, so neither the
+ * LSBs of the whole image nor a transposed copy of them are ever held in memory.
+ *
+ * The inspected lines follow the row-schedule: the rows selected by it, and in a rotated image the
+ * columns at the same positions. Rotating or flipping an image moves a row at position p to position
+ * size - 1 - p, so these counterparts are inspected as well, unless they are written rows themselves.
+ *
+ * searchVoted() doesn't trust a single copy: it reads whole lines and lets all copies of the
+ * watermark vote for every bit, until the majority is certain enough (see VoteTally).
+ *
+ * Watermarks starting at the beginning of a line, as written in the row-aligned layout, are found
+ * by searchAligned() from the first bits of a few lines, without reading the lines as a whole.
+ *
+ * Given a fork-join-pool, the lines of large images are searched by racing tasks. A task gives up as
+ * soon as a watermark has been found in an earlier line, and the earliest hit wins, as it would in
+ * the sequential search.
+ */
+class WatermarkDetector {
+
+	private static final ReadDirection[]	DIRECTIONS		= ReadDirection.values();
+	private static final int				COLUMN_TILE		= 64;
+	private static final int				ALIGNED_LINES	= 4;
+
+
+	private final int			stepSize;
+	private final RowSchedule	schedule;
+	private final int			indicatorLength;
+	private final boolean[][]	patterns;
+	private final ForkJoinPool	pool;
+
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param indicator			The watermark-indicator as bit-sequence.
+	 * @param stepSize			The distance between two manipulated pixels.
+	 * @param schedule			The manipulated rows carrying a watermark.
+	 * @param pool				Pool for searching the lines of large images in parallel, or NULL.
+	 */
+	WatermarkDetector(BitSequence indicator, int stepSize, RowSchedule schedule, ForkJoinPool pool) {
+		this.stepSize = stepSize;
+		this.schedule = schedule;
+		this.pool = pool;
+		indicatorLength = indicator.length();
+		patterns = new boolean[DIRECTIONS.length][indicatorLength];
+
+		for (int j = 0    ;    j < indicatorLength    ;    j++){
+			boolean bit = indicator.bitAt(j) == 1;
+			boolean reversedBit = indicator.bitAt(indicatorLength - 1 - j) == 1;
+			patterns[ReadDirection.REGULAR_FORWARD.ordinal()][j]	= bit;
+			patterns[ReadDirection.REGULAR_BACKWARD.ordinal()][j]	= reversedBit;
+			patterns[ReadDirection.INVERTED_FORWARD.ordinal()][j]	= ! bit;
+			patterns[ReadDirection.INVERTED_BACKWARD.ordinal()][j]	= ! reversedBit;
+		}
+	}
+
+
+
+	/**
+	 * Searches every extendedStepSize-th of the rows selected by the schedule, and their counterparts
+	 * in a flipped image, for the appearance of a watermark. Only the inspected rows are read from the
+	 * raster-engine, one at a time into the same buffer, so the cost is bounded by the number of inspected
+	 * rows rather than by the image-area. The search stops at the first row containing a complete
+	 * watermark, and its location is noted in the context.
+	 *
+	 * @param context		The context of the current operation.
+	 *
+	 * @return				The watermark-payload (if present) or NULL.
+	 */
+	String searchRows(ImageContext context) {
+		return searchRows(context, inspectedLines(context, context.imageHeight));
+	}
+
+
+	/**
+	 * Searches every extendedStepSize-th of the rows selected by the schedule of a band taken from
+	 * the top of an image. Counterparts are not searched, since they depend on the height of the image.
+	 *
+	 * @param context		The context of the current operation.
+	 *
+	 * @return				The watermark-payload (if present) or NULL.
+	 */
+	String searchLeadingRows(ImageContext context) {
+		return searchRows(context, inspectedRows(context, context.imageHeight, context.extendedStepSize));
+	}
+
+
+	private String searchRows(ImageContext context, int[] rows) {
+		Hit hit = search(context, rows.length, (first, last, race) -> scanRows(context, rows, first, last, race));
+		return accept(context, hit, false);
+	}
+
+
+	/**
+	 * Searches the columns at the positions of the rows inspected by searchRows(), i.e. the rows of
+	 * a rotated image, for the appearance of a watermark. The columns are read from the raster-engine
+	 * tile by tile; tiles following the first hit are never read. The location of the watermark is
+	 * noted in the context.
+	 *
+	 * @param context		The context of the current operation.
+	 *
+	 * @return				The watermark-payload (if present) or NULL.
+	 */
+	String searchColumns(ImageContext context) {
+		int[] columns = inspectedLines(context, context.imageWidth);
+		int tiles = (columns.length + COLUMN_TILE - 1) / COLUMN_TILE;
+
+		Hit hit = search(context, tiles, (first, last, race) -> scanColumns(context, columns, first, last, race));
+		return accept(context, hit, true);
+	}
+
+
+
+	/**
+	 * Checks the beginning of ALIGNED_LINES rows, spread over the rows inspected by searchRows(),
+	 * and then of as many columns, for a watermark starting right there. Each of these lines is
+	 * checked together with its counterpart from the opposite edge of the image, where the line
+	 * ends up in a rotated image. In reading order a line begins at its first pixel for the forward
+	 * directions and at its last pixel for the backward directions, so both ends of a line are checked,
+	 * covering watermarks in rotated and mirrored images. Only the indicator and the size of the
+	 * payload are read first, the payload only once both match; a line of a watermarked image costs a
+	 * few hundred bits, one of any other image twice the length of the indicator and the size.
+	 * The location is noted in the context.
+	 *
+	 * @param context		The context of the current operation.
+	 *
+	 * @return				The watermark-payload (if present) or NULL.
+	 */
+	String searchAligned(ImageContext context) {
+		int[] rows = inspectedRows(context, context.imageHeight, context.extendedStepSize);
+		Hit hit = checkAligned(context, false, rows, context.imageHeight);
+		if (hit != null)
+			return accept(context, hit, false);
+
+		int[] columns = inspectedRows(context, context.imageWidth, context.extendedStepSize);
+		hit = checkAligned(context, true, columns, context.imageWidth);
+		return accept(context, hit, true);
+	}
+
+
+	/**
+	 * Reads the rows inspected by searchRows() and then the columns inspected by searchColumns(),
+	 * sequentially, adding the copies of the watermark found in each line to a tally of votes.
+	 * Rows and columns are tallied separately. The search stops as soon as the majority of a tally forms
+	 * a watermark with the given confidence, which takes more lines the fewer copies a line holds and
+	 * the more of their bits are flipped.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param minConfidence	The confidence at which to stop.
+	 *
+	 * @return				The tally forming a watermark with the highest confidence, or NULL.
+	 */
+	VoteTally searchVoted(ImageContext context, double minConfidence) {
+		Map<Long, VoteTally> tallies = new HashMap<>();
+
+		int length = RasterEngine.lineLength(context.imageWidth, stepSize);
+		long[] row = new long[RasterEngine.wordsPerLine(context.imageWidth, stepSize)];
+		for (int y : inspectedLines(context, context.imageHeight)){
+			context.engine.readBlueBits(y, stepSize, row);
+			context.rowsScanned.incrementAndGet();
+			VoteTally tally = voteLine(row, length, tallies, false, y);
+			if (isDecided(tally, minConfidence))
+				return tally;
+		}
+
+		length = RasterEngine.lineLength(context.imageHeight, stepSize);
+		int[] columns = inspectedLines(context, context.imageWidth);
+		long[][] tile = new long[Math.min(COLUMN_TILE, columns.length)][RasterEngine.wordsPerLine(context.imageHeight, stepSize)];
+		for (int firstColumn = 0    ;    firstColumn < columns.length    ;    firstColumn += COLUMN_TILE){
+			int count = Math.min(COLUMN_TILE, columns.length - firstColumn);
+			context.engine.readBlueBitColumns(columns, firstColumn, count, stepSize, tile);
+			context.columnsScanned.addAndGet(count);
+
+			for (int c = 0    ;    c < count    ;    c++){
+				VoteTally tally = voteLine(tile[c], length, tallies, true, columns[firstColumn + c]);
+				if (isDecided(tally, minConfidence))
+					return tally;
+			}
+		}
+
+		VoteTally best = null;
+		for (VoteTally tally : tallies.values()){
+			if (tally.getPayload() != null    &&    (best == null    ||    tally.getConfidence() > best.getConfidence()))
+				best = tally;
+		}
+		return best;
+	}
+
+
+	private static boolean isDecided(VoteTally tally, double minConfidence) {
+		return tally != null    &&    tally.getConfidence() >= minConfidence    &&    tally.getPayload() != null;
+	}
+
+
+	/**
+	 * Searches a single row for a watermark, e.g. to confirm a watermark just written without
+	 * searching the whole image. The location is not noted in the context.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param y				Index of the row.
+	 *
+	 * @return				The watermark-payload (if present) or NULL.
+	 */
+	String searchRow(ImageContext context, int y) {
+		long[] row = new long[RasterEngine.wordsPerLine(context.imageWidth, stepSize)];
+		context.engine.readBlueBits(y, stepSize, row);
+		context.rowsScanned.incrementAndGet();
+
+		Hit hit = searchLine(row, RasterEngine.lineLength(context.imageWidth, stepSize));
+		return (hit == null)  ?  null  :  hit.payload;
+	}
+
+
+
+	/**
+	 * Runs a scan over all candidates, sequentially or, for large images with a pool, as a race of
+	 * fork-join-tasks. Either way the hit with the lowest line-index is found, so the result doesn't
+	 * depend on the mode.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param candidates	Number of candidates (rows or tiles of columns).
+	 * @param scan			Scans a range of candidates.
+	 *
+	 * @return				The first hit, or NULL.
+	 */
+	private Hit search(ImageContext context, int candidates, LineScan scan) {
+		if (pool == null    ||    candidates < 2    ||    (long) context.imageWidth * context.imageHeight < WatermarkCodec.PARALLEL_THRESHOLD)
+			return scan.scan(0, candidates, null);
+
+		Race race = new Race();
+		int grain = Math.max(1, candidates / (4 * pool.getParallelism()));
+		pool.invoke(new RaceTask(scan, 0, candidates, grain, race));
+		return race.hit;
+	}
+
+
+	private static String accept(ImageContext context, Hit hit, boolean columnWise) {
+		if (hit == null)
+			return null;
+
+		context.columnWise = columnWise;
+		context.lineIndex = hit.lineIndex;
+		context.readDirection = hit.direction;
+		return hit.payload;
+	}
+
+
+	/**
+	 * Positions of every n-th row selected by the schedule, in ascending order.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param size			The height of the image, or its width for columns of a rotated image.
+	 * @param every			Distance between two inspected rows, counting selected rows only.
+	 *
+	 * @return				The positions of the inspected rows.
+	 */
+	private int[] inspectedRows(ImageContext context, int size, int every) {
+		int[] rows = schedule.rows(RasterEngine.lineLength(size, stepSize), every);
+		for (int i = 0    ;    i < rows.length    ;    i++){
+			rows[i] *= stepSize;
+		}
+		return rows;
+	}
+
+
+	/**
+	 * Positions of the lines inspected by searchRows() and searchColumns(): every extendedStepSize-th
+	 * of the rows selected by the schedule, and the positions they end up at in a rotated or flipped
+	 * image, unless these are written rows themselves.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param size			The height of the image for rows, its width for columns.
+	 *
+	 * @return				The positions of the inspected lines, in ascending order.
+	 */
+	private int[] inspectedLines(ImageContext context, int size) {
+		int[] rows = inspectedRows(context, size, context.extendedStepSize);
+		int[] lines = Arrays.copyOf(rows, 2 * rows.length);
+		int count = rows.length;
+
+		for (int row : rows){
+			int mirrored = size - 1 - row;
+			boolean written = mirrored % stepSize == 0    &&    schedule.includes(mirrored / stepSize);
+			if (! written    &&    Arrays.binarySearch(rows, mirrored) < 0)
+				lines[count++] = mirrored;
+		}
+
+		Arrays.sort(lines, 0, count);
+		return Arrays.copyOf(lines, count);
+	}
+
+
+	/**
+	 * Checks ALIGNED_LINES of the given lines, spread evenly from the first to the last, and the
+	 * lines at the mirrored positions.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param columnWise	True if the lines are columns.
+	 * @param lines			The positions of the candidate lines.
+	 * @param size			The number of lines of the image.
+	 *
+	 * @return				The first hit, or NULL.
+	 */
+	private Hit checkAligned(ImageContext context, boolean columnWise, int[] lines, int size) {
+		for (int i = 0    ;    i < Math.min(ALIGNED_LINES, lines.length)    ;    i++){
+			int position = lines[spread(i, lines.length)];
+			int mirrored = size - 1 - position;
+			Hit hit = checkAligned(context, columnWise, position);
+			if (hit == null    &&    mirrored != position)
+				hit = checkAligned(context, columnWise, mirrored);
+			if (hit != null)
+				return hit;
+		}
+		return null;
+	}
+
+
+	/**
+	 * Index of the i-th of ALIGNED_LINES lines spread evenly from the first to the last of the lines.
+	 */
+	private static int spread(int i, int lines) {
+		return (ALIGNED_LINES == 1)  ?  0  :  (int) ((long) i * (lines - 1) / (ALIGNED_LINES - 1));
+	}
+
+
+	/**
+	 * Checks whether a watermark starts at either end of a line, in any of the read-directions.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param columnWise	True if the line is a column.
+	 * @param index			Position of the row or column.
+	 *
+	 * @return				The payload, its read-direction and the position of the line, or NULL.
+	 */
+	private Hit checkAligned(ImageContext context, boolean columnWise, int index) {
+		int length = RasterEngine.lineLength(columnWise  ?  context.imageHeight  :  context.imageWidth, stepSize);
+		int header = indicatorLength + ReadWriteUtilities.LENGTH_OF_BINARY_UNIT;
+		if (length < header)
+			return null;
+
+		long[] head = readSegment(context, columnWise, index, 0, header);
+		long[] tail = readSegment(context, columnWise, index, length - header, header);
+
+		for (ReadDirection direction : DIRECTIONS){
+			boolean backward = isBackward(direction);
+			long[] segment = backward  ?  tail  :  head;
+			if (! startsWithIndicator(segment, header, direction))
+				continue;
+
+			int sizeOfPayload = readBinaryUnit(segment, header, direction, indicatorLength);
+			if (sizeOfPayload == 0    ||    sizeOfPayload % ReadWriteUtilities.LENGTH_OF_BINARY_UNIT != 0
+					||    header + sizeOfPayload > length)
+				continue;
+
+			int count = header + sizeOfPayload;
+			long[] watermark = readSegment(context, columnWise, index, backward  ?  length - count  :  0, count);
+			String payload = isolateWatermark(watermark, count, direction, 0);
+			if (payload != null){
+				Hit hit = new Hit(payload, direction);
+				hit.lineIndex = index;
+				return hit;
+			}
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Reads consecutive bits of a line, i.e. every stepSize-th pixel from the given bit on.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param columnWise	True if the line is a column.
+	 * @param index			Position of the row or column.
+	 * @param first			Index of the first bit within the line.
+	 * @param count			Number of bits.
+	 *
+	 * @return				The packed bits, the first bit being bit 0.
+	 */
+	private long[] readSegment(ImageContext context, boolean columnWise, int index, int first, int count) {
+		long[] segment = new long[(count + Long.SIZE - 1) / Long.SIZE];
+		if (columnWise)
+			context.engine.readBlueBitRun(index, first * stepSize, 0, stepSize, count, segment);
+		else
+			context.engine.readBlueBitRun(first * stepSize, index, stepSize, 0, count, segment);
+		context.bitsProbed += count;
+		return segment;
+	}
+
+
+	/**
+	 * @param segment		The packed bits of a segment.
+	 * @param length		Number of valid bits in the segment.
+	 * @param direction		The read-direction.
+	 *
+	 * @return				True if the segment begins with the indicator in reading order.
+	 */
+	private boolean startsWithIndicator(long[] segment, int length, ReadDirection direction) {
+		boolean[] indicator = patterns[ReadDirection.REGULAR_FORWARD.ordinal()];
+
+		for (int j = 0    ;    j < indicatorLength    ;    j++){
+			if ((bitAt(segment, length, direction, j) == 1) != indicator[j])
+				return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Scans a range of the inspected rows in order, reading them one at a time into the same buffer.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param rows			The positions of the inspected rows.
+	 * @param first			Index of the first inspected row of the range.
+	 * @param last			Index following the last inspected row of the range.
+	 * @param race			The race of a parallel search, or NULL.
+	 *
+	 * @return				The first hit within the range, or NULL.
+	 */
+	private Hit scanRows(ImageContext context, int[] rows, int first, int last, Race race) {
+		int length = RasterEngine.lineLength(context.imageWidth, stepSize);
+		long[] row = new long[RasterEngine.wordsPerLine(context.imageWidth, stepSize)];
+
+		for (int i = first    ;    i < last    ;    i++){
+			int y = rows[i];
+			if (race != null    &&    race.isDecidedBefore(y))
+				return null;
+
+			context.engine.readBlueBits(y, stepSize, row);
+			context.rowsScanned.incrementAndGet();
+			Hit hit = searchLine(row, length);
+			if (hit != null){
+				hit.lineIndex = y;
+				return hit;
+			}
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Scans a range of tiles of the inspected columns in order.
+	 *
+	 * @param context		The context of the current operation.
+	 * @param columns		The positions of the inspected columns.
+	 * @param first			Index of the first tile of the range.
+	 * @param last			Index following the last tile of the range.
+	 * @param race			The race of a parallel search, or NULL.
+	 *
+	 * @return				The first hit within the range, or NULL.
+	 */
+	private Hit scanColumns(ImageContext context, int[] columns, int first, int last, Race race) {
+		int length = RasterEngine.lineLength(context.imageHeight, stepSize);
+		long[][] tile = new long[Math.min(COLUMN_TILE, columns.length)][RasterEngine.wordsPerLine(context.imageHeight, stepSize)];
+
+		for (int t = first    ;    t < last    ;    t++){
+			int firstColumn = t * COLUMN_TILE;
+			if (race != null    &&    race.isDecidedBefore(columns[firstColumn]))
+				return null;
+
+			int count = Math.min(COLUMN_TILE, columns.length - firstColumn);
+			context.engine.readBlueBitColumns(columns, firstColumn, count, stepSize, tile);
+			context.columnsScanned.addAndGet(count);
+
+			for (int c = 0    ;    c < count    ;    c++){
+				Hit hit = searchLine(tile[c], length);
+				if (hit != null){
+					hit.lineIndex = columns[firstColumn + c];
+					return hit;
+				}
+			}
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Searches a single line in all four read-directions, in the order of ReadDirection.
+	 * Within one direction the occurrences of the indicator are examined in reading order, and the
+	 * first one followed by a complete payload is returned.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param length		Number of valid bits in the line.
+	 *
+	 * @return				The payload and its read-direction, or NULL if the line contains no watermark.
+	 */
+	private Hit searchLine(long[] line, int length) {
+		if (length < indicatorLength)
+			return null;
+
+		for (ReadDirection direction : DIRECTIONS){
+			String payload = searchDirection(line, length, direction);
+			if (payload != null)
+				return new Hit(payload, direction);
+		}
+
+		return null;
+	}
+
+
+
+	/**
+	 * Searches a line for the pattern of one read-direction. Blocks of 64 candidate positions are
+	 * processed in reading order, i.e. from the end of the line for the backward directions.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param length		Number of valid bits in the line.
+	 * @param direction		The read-direction.
+	 *
+	 * @return				The payload of the first complete watermark, or NULL.
+	 */
+	private String searchDirection(long[] line, int length, ReadDirection direction) {
+		boolean[] pattern = patterns[direction.ordinal()];
+		boolean backward = isBackward(direction);
+		int lastCandidate = length - indicatorLength;
+		int blocks = lastCandidate / Long.SIZE + 1;
+
+		for (int k = 0    ;    k < blocks    ;    k++){
+			int block = backward  ?  blocks - 1 - k  :  k;
+			int blockStart = block * Long.SIZE;
+			long candidates = matchBlock(line, blockStart, lastCandidate - blockStart, pattern);
+
+			while (candidates != 0){
+				int bit = backward  ?  Long.SIZE - 1 - Long.numberOfLeadingZeros(candidates)
+									:  Long.numberOfTrailingZeros(candidates);
+				candidates &= ~(1L << bit);
+
+				int position = blockStart + bit;
+				int start = backward  ?  length - indicatorLength - position  :  position;
+				String payload = isolateWatermark(line, length, direction, start);
+				if (payload != null)
+					return payload;
+			}
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Adds the bits of a line to the tally of the period and read-direction of the copies it holds.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param length		Number of valid bits in the line.
+	 * @param tallies		The tallies so far, by period, read-direction and kind of line; a new one is added if required.
+	 * @param columnWise	True if the line is a column.
+	 * @param index			Position of the row or column.
+	 *
+	 * @return				The tally the line has been added to, or NULL if the line holds no copy.
+	 */
+	private VoteTally voteLine(long[] line, int length, Map<Long, VoteTally> tallies, boolean columnWise, int index) {
+		if (length < indicatorLength)
+			return null;
+
+		for (ReadDirection direction : DIRECTIONS){
+			long copies = locateCopies(line, length, direction);
+			if (copies < 0)
+				continue;
+
+			int period = (int) (copies >>> 32);
+			long tallyKey = ((long) period << 3) | (columnWise  ?  4  :  0) | direction.ordinal();
+			VoteTally tally = tallies.computeIfAbsent(tallyKey,
+					key -> new VoteTally(patterns[ReadDirection.REGULAR_FORWARD.ordinal()], period, direction, columnWise, index));
+			tally.add(line, length, (int) copies);
+			return tally;
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Determines period and phase of the copies of a watermark within a line. Every complete match of
+	 * the indicator followed by a valid size of a payload suggests a period (the length of the sequence)
+	 * and a phase (its start modulo the period); the suggestion made most often wins. Copies with a
+	 * damaged indicator or size make no suggestion, but are aligned by the others.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param length		Number of valid bits in the line.
+	 * @param direction		The read-direction.
+	 *
+	 * @return				Period (upper 32 bits) and phase (lower 32 bits), or -1 if there is no match.
+	 */
+	private long locateCopies(long[] line, int length, ReadDirection direction) {
+		boolean[] pattern = patterns[direction.ordinal()];
+		boolean backward = isBackward(direction);
+		int lastCandidate = length - indicatorLength;
+		int blocks = lastCandidate / Long.SIZE + 1;
+		int header = indicatorLength + ReadWriteUtilities.LENGTH_OF_BINARY_UNIT;
+
+		Map<Long, Integer> suggestions = new HashMap<>();
+		long best = -1;
+		int bestCount = 0;
+
+		for (int block = 0    ;    block < blocks    ;    block++){
+			int blockStart = block * Long.SIZE;
+			long candidates = matchBlock(line, blockStart, lastCandidate - blockStart, pattern);
+
+			while (candidates != 0){
+				int bit = Long.numberOfTrailingZeros(candidates);
+				candidates &= candidates - 1;
+
+				int position = blockStart + bit;
+				int start = backward  ?  length - indicatorLength - position  :  position;
+				if (start + header > length)
+					continue;
+
+				int sizeOfPayload = readBinaryUnit(line, length, direction, start + indicatorLength);
+				if (sizeOfPayload == 0    ||    sizeOfPayload % ReadWriteUtilities.LENGTH_OF_BINARY_UNIT != 0)
+					continue;
+
+				int period = header + sizeOfPayload;
+				long suggestion = ((long) period << 32) | (start % period);
+				int count = suggestions.merge(suggestion, 1, Integer::sum);
+				if (count > bestCount){
+					best = suggestion;
+					bestCount = count;
+				}
+			}
+		}
+
+		return best;
+	}
+
+
+	/**
+	 * Determines which of the 64 positions starting at blockStart are followed by the pattern.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param blockStart	First candidate position of the block.
+	 * @param lastOffset	Offset of the last valid candidate position relative to blockStart.
+	 * @param pattern		The pattern to search for.
+	 *
+	 * @return				A mask with bit i set, if the pattern starts at blockStart + i.
+	 */
+	private static long matchBlock(long[] line, int blockStart, int lastOffset, boolean[] pattern) {
+		long candidates = (lastOffset >= Long.SIZE - 1)  ?  -1L  :  (1L << (lastOffset + 1)) - 1;
+
+		for (int j = 0    ;    j < pattern.length    &&    candidates != 0    ;    j++){
+			long window = bitsAt(line, blockStart + j);
+			candidates &= pattern[j]  ?  window  :  ~window;
+		}
+
+		return candidates;
+	}
+
+
+	/**
+	 * Returns the 64 bits of a line starting at the given position.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param position		The position of the first bit.
+	 *
+	 * @return				The bits, position being bit 0.
+	 */
+	private static long bitsAt(long[] line, int position) {
+		int word = position >>> 6;
+		int shift = position & (Long.SIZE - 1);
+		long low = line[word] >>> shift;
+
+		if (shift == 0    ||    word + 1 >= line.length)
+			return low;
+		return low | (line[word + 1] << (Long.SIZE - shift));
+	}
+
+
+
+	/**
+	 * Isolating the watermark following an indicator found by searchDirection().
+	 * Using the watermark-indicator, the location of the size-information is determined. From there, the
+	 * start-index and the size of the watermark-payload are determined. If the line holds the complete
+	 * payload, its bytes are decoded to a String by PayloadText.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param length		Number of valid bits in the line.
+	 * @param direction		The read-direction.
+	 * @param start			Position of the indicator in reading order.
+	 *
+	 * @return				The watermark payload, or NULL if the payload is missing or incomplete.
+	 */
+	private String isolateWatermark(long[] line, int length, ReadDirection direction, int start) {
+		int unitStart = start + indicatorLength;
+		int startOfPayload = unitStart + ReadWriteUtilities.LENGTH_OF_BINARY_UNIT;
+		if (startOfPayload > length)
+			return null;
+
+		int sizeOfPayload = readBinaryUnit(line, length, direction, unitStart);
+		if (sizeOfPayload == 0    ||    sizeOfPayload % ReadWriteUtilities.LENGTH_OF_BINARY_UNIT != 0
+				||    startOfPayload + sizeOfPayload > length)
+			return null;
+
+		byte[] payload = new byte[sizeOfPayload / ReadWriteUtilities.LENGTH_OF_BINARY_UNIT];
+		for (int i = 0    ;    i < payload.length    ;    i++){
+			payload[i] = (byte) readBinaryUnit(line, length, direction,
+												startOfPayload + i * ReadWriteUtilities.LENGTH_OF_BINARY_UNIT);
+		}
+
+		return PayloadText.decode(payload);
+	}
+
+
+	/**
+	 * Reads one binary unit (most significant bit first) in reading order.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param length		Number of valid bits in the line.
+	 * @param direction		The read-direction.
+	 * @param start			Position of the first bit in reading order.
+	 *
+	 * @return				The decimal value of the unit.
+	 */
+	private static int readBinaryUnit(long[] line, int length, ReadDirection direction, int start) {
+		int value = 0;
+
+		for (int i = 0    ;    i < ReadWriteUtilities.LENGTH_OF_BINARY_UNIT    ;    i++){
+			value = (value << 1) | bitAt(line, length, direction, start + i);
+		}
+
+		return value;
+	}
+
+
+	/**
+	 * Returns a single bit of a line in reading order.
+	 *
+	 * @param line			The packed bits of the line.
+	 * @param length		Number of valid bits in the line.
+	 * @param direction		The read-direction.
+	 * @param index			Position of the bit in reading order.
+	 *
+	 * @return				Either 0 or 1.
+	 */
+	static int bitAt(long[] line, int length, ReadDirection direction, int index) {
+		int position = isBackward(direction)  ?  length - 1 - index  :  index;
+		int bit = (int) (line[position >>> 6] >>> (position & (Long.SIZE - 1))) & 1;
+		return isInverted(direction)  ?  bit ^ 1  :  bit;
+	}
+
+
+	private static boolean isBackward(ReadDirection direction) {
+		return direction == ReadDirection.REGULAR_BACKWARD    ||    direction == ReadDirection.INVERTED_BACKWARD;
+	}
+
+
+	private static boolean isInverted(ReadDirection direction) {
+		return direction == ReadDirection.INVERTED_FORWARD    ||    direction == ReadDirection.INVERTED_BACKWARD;
+	}
+
+
+
+	/**
+	 * Scans the candidates first (inclusive) to last (exclusive) in order, giving up once the race
+	 * is decided for a line before the current one.
+	 */
+	private interface LineScan {
+		Hit scan(int first, int last, Race race);
+	}
+
+
+	/**
+	 * A watermark found in a line.
+	 */
+	private static class Hit {
+
+		final String			payload;
+		final ReadDirection		direction;
+		int						lineIndex;
+
+		Hit(String payload, ReadDirection direction) {
+			this.payload 	= payload;
+			this.direction 	= direction;
+		}
+	}
+
+
+	/**
+	 * The state shared by the tasks of a parallel search: the hit with the lowest line-index so far.
+	 * Tasks stop at lines beyond it, since they can no longer improve the result.
+	 */
+	private static class Race {
+
+		private volatile int	bestLineIndex	= Integer.MAX_VALUE;
+		Hit						hit;
+
+		synchronized void offer(Hit candidate) {
+			if (candidate.lineIndex < bestLineIndex){
+				hit = candidate;
+				bestLineIndex = candidate.lineIndex;
+			}
+		}
+
+		boolean isDecidedBefore(int lineIndex) {
+			return bestLineIndex < lineIndex;
+		}
+	}
+
+
+	/**
+	 * Splits a range of candidates in halves until it is small enough to be scanned by one task.
+	 */
+	private static class RaceTask extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private final LineScan		scan;
+		private final int			first;
+		private final int			last;
+		private final int			grain;
+		private final Race			race;
+
+		RaceTask(LineScan scan, int first, int last, int grain, Race race) {
+			this.scan 	= scan;
+			this.first 	= first;
+			this.last 	= last;
+			this.grain 	= grain;
+			this.race 	= race;
+		}
+
+		@Override
+		protected void compute() {
+			if (last - first <= grain){
+				Hit hit = scan.scan(first, last, race);
+				if (hit != null)
+					race.offer(hit);
+				return;
+			}
+
+			int middle = (first + last) >>> 1;
+			invokeAll(new RaceTask(scan, first, middle, grain, race), new RaceTask(scan, middle, last, grain, race));
+		}
+	}
+}
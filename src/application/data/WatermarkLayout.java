@@ -0,0 +1,15 @@
+package application.data;
+
+/**
+ * The ways in which the bit-sequence of a watermark is distributed over the manipulated rows.
+ * >> CYCLIC continues the sequence from the end of one row at the start of the next row, so every
+ *    row but the first holds the indicator at a different offset.
+ * >> ROW_ALIGNED restarts the sequence at the first manipulated pixel of every row. The indicator
+ *    always starts at the beginning of a row (or, in a rotated image, at either end of a column),
+ *    so a reader only has to check a few hundred bits of a handful of lines.
+ * Both layouts are found by every reader; they only differ in the time a reader needs to find them.
+ */
+public enum WatermarkLayout {
+	CYCLIC,
+	ROW_ALIGNED
+}
@@ -0,0 +1,94 @@
+package application.data;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Checks image-files for a watermark at a fraction of the cost of decoding them. The watermark is
+ * written cyclically from the first pixel on, so the first row holds it completely, and every other
+ * row most likely, unless the image has been rotated. The probe therefore decodes a few leading rows
+ * only (the compressed data beyond them isn't even inflated) and searches them. Only if they hold no
+ * watermark, the whole image is decoded and searched like WatermarkCodec.read() does, including its
+ * columns. Probing is limited to the PNG-files a BandSource can decode (8-bit RGB or RGBA without
+ * interlacing); all other files are decoded as a whole right away.
+ */
+public class WatermarkProbe {
+
+	/** Default number of leading rows decoded by a probe. */
+	public static final int		DEFAULT_PROBE_ROWS		= 16;
+
+
+	private final WatermarkCodec	codec;
+	private final int				probeRows;
+
+
+
+	/**
+	 * Constructor. Creates a probe using the default codec and number of rows.
+	 */
+	public WatermarkProbe() {
+		this(ReadWriteUtilities.getDefaultCodec(), DEFAULT_PROBE_ROWS);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param codec			The codec providing watermark-indicator and step-size.
+	 * @param probeRows		Number of leading rows searched before the whole image is decoded.
+	 */
+	public WatermarkProbe(WatermarkCodec codec, int probeRows) {
+		if (probeRows < 1)
+			throw new IllegalArgumentException("At least one row has to be probed.");
+
+		this.codec 		= codec;
+		this.probeRows 	= probeRows;
+	}
+
+
+
+	/**
+	 * Reads the watermark of an image-file, decoding as little of it as possible.
+	 *
+	 * @param file			The image-file in any format supported by ImageIO.
+	 *
+	 * @return				The result holding the payload (empty if no watermark is present)
+	 * 						and its location, or NULL in case of failure.
+	 *
+	 * @throws IOException	Thrown if the file can't be read or holds no supported image.
+	 */
+	public WatermarkResult read(File file) throws IOException {
+		WatermarkResult result = probe(file);
+		if (result != null    &&    result.isWatermarkPresent())
+			return result;
+
+		BufferedImage image = ImageIO.read(file);
+		if (image == null)
+			throw new IOException("Unsupported image-format.");
+		return codec.read(image);
+	}
+
+
+	/**
+	 * Searches the leading rows of an image-file only.
+	 *
+	 * @param file			The image-file.
+	 *
+	 * @return				The result (empty if the leading rows hold no watermark, or if the file isn't
+	 * 						a PNG-file that can be probed), or NULL in case of failure.
+	 *
+	 * @throws IOException	Thrown if the file can't be read.
+	 */
+	public WatermarkResult probe(File file) throws IOException {
+		try (BandSource source = BandSource.open(file)) {
+			if (source == null)
+				return WatermarkResult.empty();
+
+			BufferedImage band = source.nextBand(Math.min(probeRows, source.getHeight()));
+			return codec.readLeadingRows(RasterEngine.forImage(band));
+		}
+	}
+}
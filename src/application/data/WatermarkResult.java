@@ -0,0 +1,112 @@
+package application.data;
+
+/**
+ * Immutable outcome of a read-, write- or erase-operation of a WatermarkCodec.
+ * Besides the payload it holds the number of redundant writes and, for read-operations,
+ * the location at which the watermark was found. Results of a majority-vote additionally hold the
+ * number of copies that voted and the confidence of the vote.
+ */
+public class WatermarkResult {
+
+	private final String          payload;
+	private final int             redundancy;
+	private final boolean         columnWise;
+	private final int             lineIndex;
+	private final ReadDirection   readDirection;
+	private final int             copies;
+	private final double          confidence;
+
+
+
+	private WatermarkResult(String payload, int redundancy, boolean columnWise, int lineIndex,
+			ReadDirection readDirection, int copies, double confidence) {
+		this.payload 		= payload;
+		this.redundancy 	= redundancy;
+		this.columnWise 	= columnWise;
+		this.lineIndex 		= lineIndex;
+		this.readDirection 	= readDirection;
+		this.copies 		= copies;
+		this.confidence 	= confidence;
+	}
+
+
+
+	/**
+	 * Result of a successful write-operation.
+	 *
+	 * @param payload		The written watermark-payload.
+	 * @param redundancy	Number of complete writes of the watermark.
+	 *
+	 * @return				The result.
+	 */
+	static WatermarkResult written(String payload, int redundancy) {
+		return new WatermarkResult(payload, redundancy, false, -1, null, 0, 0);
+	}
+
+
+	/**
+	 * Result of a read-operation that found a watermark. The single copy read is taken as it is,
+	 * so copies and confidence are 1.
+	 *
+	 * @param payload		The payload read from the image.
+	 * @param columnWise	True if the watermark was found in a column instead of a row.
+	 * @param lineIndex		Index of the row or column containing the watermark.
+	 * @param readDirection	Interpretation of the line in which the watermark was found.
+	 *
+	 * @return				The result.
+	 */
+	static WatermarkResult found(String payload, boolean columnWise, int lineIndex, ReadDirection readDirection) {
+		return new WatermarkResult(payload, 0, columnWise, lineIndex, readDirection, 1, 1);
+	}
+
+
+	/**
+	 * Result of a majority-vote over the copies of a watermark.
+	 *
+	 * @param payload		The payload formed by the majority.
+	 * @param columnWise	True if the copies were found in columns instead of rows.
+	 * @param lineIndex		Index of the first row or column that voted.
+	 * @param readDirection	Interpretation of the lines that voted.
+	 * @param copies		Number of votes for the bit with the fewest votes.
+	 * @param confidence	Confidence of the least certain bit, from 0 to 1.
+	 *
+	 * @return				The result.
+	 */
+	static WatermarkResult voted(String payload, boolean columnWise, int lineIndex, ReadDirection readDirection,
+			int copies, double confidence) {
+		return new WatermarkResult(payload, 0, columnWise, lineIndex, readDirection, copies, confidence);
+	}
+
+
+	/**
+	 * Result of a read-operation that found no watermark, or of an erase-operation.
+	 *
+	 * @return				The result.
+	 */
+	static WatermarkResult empty() {
+		return new WatermarkResult("", 0, false, -1, null, 0, 0);
+	}
+
+
+
+	public String			getPayload()					{	return payload;					}
+	public int				getRedundancy()					{	return redundancy;				}
+	public boolean			isColumnWise()					{	return columnWise;				}
+	public int				getLineIndex()					{	return lineIndex;				}
+	public ReadDirection	getReadDirection()				{	return readDirection;			}
+	public int				getCopies()						{	return copies;					}
+	public double			getConfidence()					{	return confidence;				}
+
+	public boolean			isWatermarkPresent()			{	return ! payload.equals("");	}
+
+
+
+	@Override
+	public String toString() {
+		if (readDirection == null)
+			return "WatermarkResult[payload=" + payload + ", redundancy=" + redundancy + "]";
+		return "WatermarkResult[payload=" + payload + ", " + (columnWise ? "column " : "row ") + lineIndex
+				+ ", " + readDirection + ((copies > 1)  ?  String.format(", %d copies, confidence=%.4f", copies, confidence)  :  "")
+				+ "]";
+	}
+}
@@ -7,13 +7,14 @@ import java.io.IOException;
 
 import javax.imageio.ImageIO;
 
-import application.Main;
-
 
 
 
 public class WorkingImage {
 
+	private static final WatermarkCodec       CODEC        = ReadWriteUtilities.getDefaultCodec();
+	private static final ParallelPngWriter    PNG_WRITER   = new ParallelPngWriter();
+	
 	private File            file;
 	private BufferedImage   image;
 	private String          watermark;
@@ -23,8 +24,10 @@ public class WorkingImage {
 	private boolean         imageSaved;
 	private boolean         imageLoaded;
 	private boolean         imageWatermarked;
+	private boolean         detectionPending;
 
 	private int             redundantWrites;
+	private int             imageRevision;
 	
 	
 	
@@ -36,6 +39,19 @@ public class WorkingImage {
 	 * @param file	An image-file. Either PNG oder BMP.
 	 */
 	public WorkingImage(File file) {
+		this(file, true);
+	}
+	
+	
+	/**
+	 * Constructor. Opens an image-file and, if requested, searches it for a
+	 * watermark. Otherwise the search is pending until a result is passed to
+	 * applyDetectedWatermark().
+	 * 
+	 * @param file				An image-file. Either PNG oder BMP.
+	 * @param searchWatermark	True to search for a watermark right away.
+	 */
+	private WorkingImage(File file, boolean searchWatermark) {
 		this.file = file;
 		loadImageDataFromFile();
 		
@@ -43,10 +59,30 @@ public class WorkingImage {
 			imageSaved = true;
 			imageWatermarked = false;
 			getWatermarkMaxLength();
-			readWatermark();		
+			if (searchWatermark){
+				readWatermark();
+			} else {
+				detectionPending = true;
+				imageStatus = "Datei geladen. Suche nach Wasserzeichen ...";
+			}
 		}
 	}
 	
+	
+	/**
+	 * Opens an image-file without searching it for a watermark, so the image
+	 * can be shown before the search is done. The caller performs the search by
+	 * detectWatermark(), e.g. on a background-thread, and hands the result to
+	 * applyDetectedWatermark().
+	 * 
+	 * @param file	An image-file. Either PNG oder BMP.
+	 * 
+	 * @return		The image with a pending watermark-search.
+	 */
+	public static WorkingImage openWithoutDetection(File file) {
+		return new WorkingImage(file, false);
+	}
+	
 
 
 	public File 			getImageFile()						{	return file;					}
@@ -57,6 +93,8 @@ public class WorkingImage {
 	public boolean 			isImageSaved()						{	return imageSaved;				}
 	public boolean 			isImageLoaded()						{	return imageLoaded;				}
 	public boolean 			isImageWatermarked()				{	return imageWatermarked;		}
+	public boolean 			isDetectionPending()				{	return detectionPending;		}
+	public int 				getImageRevision()					{	return imageRevision;			}
 
 	protected void setRedundancy(int redundantWrites) {
 		this.redundantWrites = redundantWrites;	
@@ -90,12 +128,42 @@ public class WorkingImage {
 		
 	
 	/**
-	 * Reading a watermark from the image using ReadWriteUtilities. If a 
+	 * Reading a watermark from the image using the shared WatermarkCodec. If a 
 	 * watermark is present, the status is updated.
 	 */
 	public void readWatermark() {
-		watermark = ReadWriteUtilities.readWatermarkFromImage(image);
-		if (! (watermark == null)    &    ! watermark.equals("")){
+		takeWatermarkFrom(CODEC.read(image));
+	}
+	
+	
+	
+	/**
+	 * Searches the image for a watermark using the shared WatermarkCodec, without
+	 * changing the state of this object. The image is only read, so the search can
+	 * run on any thread as long as the image isn't manipulated meanwhile.
+	 * 
+	 * @return		The result of the search, or NULL in case of failure.
+	 */
+	public WatermarkResult detectWatermark() {
+		return CODEC.read(image);
+	}
+	
+	
+	/**
+	 * Completes a pending watermark-search with the result of detectWatermark().
+	 * 
+	 * @param result	The result of the search, or NULL in case of failure.
+	 */
+	public void applyDetectedWatermark(WatermarkResult result) {
+		detectionPending = false;
+		imageStatus = "Datei geladen.";
+		takeWatermarkFrom(result);
+	}
+	
+	
+	private void takeWatermarkFrom(WatermarkResult result) {
+		watermark = (result == null)  ?  null  :  result.getPayload();
+		if (! (watermark == null)    &&    ! watermark.equals("")){
 			imageWatermarked = true;
 		}				
 	}
@@ -103,38 +171,45 @@ public class WorkingImage {
 
 	
 	/**
-	 * Writing a watermark to the image using ReadWriteUtilities. 
-	 * If the payload is neither null nor empty nor too large a writing-operation
-	 * is started. If this writing-operation doesn't result in a null-reference,
-	 * the status is updated.
+	 * Writing a watermark to the image using the shared WatermarkCodec. 
+	 * If the payload is neither null nor empty nor too large (as UTF-8) a writing-operation
+	 * is started. An existing watermark is replaced in the same pass. If this 
+	 * writing-operation doesn't result in a null-reference, the status is updated.
+	 * The written watermark is confirmed by checking the first row only; the whole
+	 * image is searched again only if that check fails.
 	 * 
 	 * @param watermark		The watermark-payload.
 	 */
 	public void writeWatermark(String watermark) {
-		BufferedImage tempImage = null;
-		if (! (watermark == null)   &&   ! watermark.equals("")   &&   ! (watermark.length() > watermarkMaxLength)){
-			tempImage = ReadWriteUtilities.writeWatermarkToImage(watermark, image);
+		WatermarkResult result = null;
+		if (! (watermark == null)   &&   ! watermark.equals("")   &&   ! (WatermarkCodec.getPayloadSize(watermark) > watermarkMaxLength)){
+			result = CODEC.write(watermark, image);
 		}
 		
-		if (tempImage != null) {
-			image = tempImage;
-			redundantWrites = ReadWriteUtilities.getRedundancy();
+		if (result != null) {
+			redundantWrites = result.getRedundancy();
+			imageRevision++;
 			imageSaved = false;
 			imageWatermarked = true;
 			imageStatus = "Wasserzeichen geschrieben mit " + redundantWrites + "-facher Redundanz.";
-			readWatermark();
+			if (CODEC.verify(watermark, image)){
+				this.watermark = watermark;
+			} else {
+				readWatermark();
+			}
 		}
 	}
 	
 	
 	
 	/**
-	 * Erases a watermark from the image using ReadWriteUtilities. If 
+	 * Erases a watermark from the image using the shared WatermarkCodec. If 
 	 * successful, the image status is updated.
 	 */
 	public void eraseWatermark() {
-		boolean isErased = ReadWriteUtilities.eraseWatermarkFromImage(image);
+		boolean isErased = CODEC.erase(image) != null;
 		if (isErased){
+			imageRevision++;
 			imageSaved = false;
 			imageWatermarked = false;
 			imageStatus = "Wasserzeichen entfernt.";
@@ -148,7 +223,10 @@ public class WorkingImage {
 	 */
 	private void loadImageDataFromFile() {
 		try {
+			long start = Instrumentation.start();
 			image = ImageIO.read(file);
+			if (image != null)
+				Instrumentation.finish(OperationType.LOAD, start, (long) image.getWidth() * image.getHeight(), file.length());
 			imageLoaded = true;
 			imageSaved = true;
 			imageStatus = "Datei geladen.";
@@ -160,16 +238,19 @@ public class WorkingImage {
 
 	
 	/**
-	 * Writes image-data to a file, reloads the image on view and updates 
-	 * the status.
+	 * Writes image-data to a file and updates the status. The image in memory
+	 * equals the saved one (PNG is lossless), so it is neither decoded nor 
+	 * searched for a watermark again; it is just associated with the new file.
 	 * 
 	 * @param file			The destination file.
 	 * 
 	 * @throws IOException	Thrown if file access fails.
 	 */
 	private void saveImageDataInFile(File file) throws IOException {
-		ImageIO.write(image, "png", file);
-		Main.setActiveImage(file);
+		long start = Instrumentation.start();
+		PNG_WRITER.write(image, file);
+		Instrumentation.finish(OperationType.SAVE, start, (long) image.getWidth() * image.getHeight(), file.length());
+		this.file = file;
 		imageSaved = true;
 		imageStatus = "Datei gespeichert.";
 	}
@@ -194,7 +275,7 @@ public class WorkingImage {
 
 	
 	/**
-	 * The payload must not contain more than 30 characters even for large images.
+	 * The payload must not occupy more than 30 bytes (UTF-8) even for large images.
 	 * For smaller images that number is decreases to guarantee that every image-
 	 * row contains the watermark at least once.
 	 * 
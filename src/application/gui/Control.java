@@ -1,7 +1,6 @@
 package application.gui;
 
 import java.io.File;
-import java.net.MalformedURLException;
 import java.util.Optional;
 
 import application.Main;
@@ -38,8 +37,12 @@ public class Control {
 			imageFile = chooseFileToOpen();
 		}
 		if (imageFile != null){
-			Main.setActiveImage(imageFile);
-			performPostActionUpdates();
+			ImageLoader.load(imageFile, 
+					image -> {
+						Main.setActiveImage(image);
+						performPostActionUpdates();
+					}, 
+					image -> performPostActionUpdates());
 		}
 	}
 		
@@ -131,30 +134,14 @@ public class Control {
 	
 	
 	protected static void setBackgroundImage(BorderPane primaryGuiContainer) {
-		String source 	= "";
-		
-		try {
-			source = Main.getActiveImage().getImageFile().toURI().toURL().toString();
-		} catch (MalformedURLException e) {
+		Image image = ImagePreview.get(Main.getActiveImage(), primaryGuiContainer.getWidth(), primaryGuiContainer.getHeight());
+		if (image == null)
 			return;
-		}
-		
-		BackgroundImage backImage = customizeImageForDisplay(source, primaryGuiContainer);
-		primaryGuiContainer.setBackground(new Background(backImage));
-	}
-
-
-	private static BackgroundImage customizeImageForDisplay(String imageSource, BorderPane gui) {
-		Image image = new Image(imageSource);
 		
-		if (image.getHeight() > gui.getHeight()   ||    image.getWidth() > gui.getWidth())
-			image = new Image(imageSource, gui.getWidth(), gui.getHeight(), true, true);
-	
 		BackgroundImage backImage = new BackgroundImage(	
 				image, 	BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT,
 						BackgroundPosition.CENTER, BackgroundSize.DEFAULT	);
-		
-		return backImage;
+		primaryGuiContainer.setBackground(new Background(backImage));
 	}
 
 
@@ -168,7 +155,7 @@ public class Control {
 		menu.getMenuItemSaveFile().setDisable(Main.getActiveImage().isImageSaved());
 		menu.getMenuItemSaveFileAs().setDisable(! Main.getActiveImage().isImageLoaded());
 		menu.getMenuItemReadMark().setDisable(! Main.getActiveImage().isImageWatermarked());
-		menu.getMenuItemWriteMark().setDisable(Main.getActiveImage().isImageWatermarked());
+		menu.getMenuItemWriteMark().setDisable(! Main.getActiveImage().isImageLoaded()    ||    Main.getActiveImage().isDetectionPending());
 		menu.getMenuItemEraseMark().setDisable(! Main.getActiveImage().isImageWatermarked());	
 	}
 		
@@ -0,0 +1,113 @@
+package application.gui;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import application.data.WatermarkResult;
+import application.data.WorkingImage;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+/**
+ * Opens image-files off the JavaFX application-thread. Decoding and the search for a watermark run
+ * on a background-thread; the image is handed to the user-interface as soon as its pixels are
+ * available, the result of the search follows when it is done.
+ *
+ * Only the most recently requested file counts: opening another file cancels the running task,
+ * and results of a superseded task are dropped, even if it can't be stopped in time.
+ */
+class ImageLoader {
+
+	private static final ExecutorService		EXECUTOR		= Executors.newCachedThreadPool(ImageLoader::newDaemonThread);
+
+	private static LoadTask						currentTask;
+
+
+
+	/**
+	 * Starts opening an image-file. Both callbacks are called on the JavaFX application-thread,
+	 * unless the task is superseded before.
+	 *
+	 * @param file			The image-file.
+	 * @param onLoaded		Receives the image as soon as its pixels are available.
+	 * @param onDetected	Receives the image once the search for a watermark is finished.
+	 */
+	static void load(File file, Consumer<WorkingImage> onLoaded, Consumer<WorkingImage> onDetected) {
+		if (currentTask != null)
+			currentTask.cancel(true);
+
+		currentTask = new LoadTask(file, onLoaded, onDetected);
+		EXECUTOR.execute(currentTask);
+	}
+
+
+
+	private static Thread newDaemonThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "image-loader");
+		thread.setDaemon(true);
+		return thread;
+	}
+
+
+
+	/**
+	 * Decodes an image-file and searches it for a watermark. The value of the task is the result
+	 * of the search; the decoded image is published separately in between.
+	 */
+	private static class LoadTask extends Task<WatermarkResult> {
+
+		private final File						file;
+		private final Consumer<WorkingImage>	onLoaded;
+		private final Consumer<WorkingImage>	onDetected;
+
+		private volatile WorkingImage			image;
+
+
+		LoadTask(File file, Consumer<WorkingImage> onLoaded, Consumer<WorkingImage> onDetected) {
+			this.file 		= file;
+			this.onLoaded 	= onLoaded;
+			this.onDetected = onDetected;
+
+			setOnSucceeded	(e -> completeDetection(getValue()));
+			setOnFailed		(e -> completeDetection(null));
+		}
+
+
+		@Override
+		protected WatermarkResult call() {
+			WorkingImage loaded = WorkingImage.openWithoutDetection(file);
+			if (isCancelled())
+				return null;
+
+			image = loaded;
+			Platform.runLater(() -> {
+				if (isCurrent())
+					onLoaded.accept(loaded);
+			});
+
+			if (! loaded.isImageLoaded())
+				return null;
+			return loaded.detectWatermark();
+		}
+
+
+		/**
+		 * Runs on the application-thread, after the image has been published.
+		 */
+		private void completeDetection(WatermarkResult result) {
+			if (! isCurrent()    ||    image == null    ||    ! image.isImageLoaded())
+				return;
+
+			image.applyDetectedWatermark(result);
+			onDetected.accept(image);
+		}
+
+
+		private boolean isCurrent() {
+			return currentTask == this;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package application.gui;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+
+import application.data.WorkingImage;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+
+/**
+ * Provides the displayed version of the active image, rendered from the decoded image in memory,
+ * so the file is never decoded again for display and unsaved manipulations are shown as they are.
+ *
+ * Images larger than the available space are reduced by repeated halving before the final scaling
+ * step, which keeps the quality of a smooth downscale at a fraction of its cost. The preview is kept
+ * until the image, its pixels (see WorkingImage.getImageRevision()) or the available space change.
+ */
+class ImagePreview {
+
+	private static WeakReference<WorkingImage>	source			= new WeakReference<>(null);
+	private static int							sourceRevision;
+	private static double						maxWidth;
+	private static double						maxHeight;
+	private static Image						preview;
+
+
+
+	/**
+	 * Returns the preview of an image, fitted into the given space while keeping its aspect-ratio.
+	 * Images smaller than the space are shown in their original size.
+	 *
+	 * @param image			The image to display.
+	 * @param width			The available width; no limit if not positive.
+	 * @param height		The available height; no limit if not positive.
+	 *
+	 * @return				The preview, or NULL if the image holds no pixels.
+	 */
+	static Image get(WorkingImage image, double width, double height) {
+		if (image.getImage() == null)
+			return null;
+
+		boolean valid = source.get() == image    &&    sourceRevision == image.getImageRevision()
+						&&    maxWidth == width    &&    maxHeight == height;
+		if (! valid){
+			preview = SwingFXUtils.toFXImage(fit(image.getImage(), width, height), null);
+			source = new WeakReference<>(image);
+			sourceRevision = image.getImageRevision();
+			maxWidth = width;
+			maxHeight = height;
+		}
+		return preview;
+	}
+
+
+
+	/**
+	 * Scales an image down to fit into the given space.
+	 *
+	 * @param image			The image.
+	 * @param width			The available width; no limit if not positive.
+	 * @param height		The available height; no limit if not positive.
+	 *
+	 * @return				The image itself if it fits, otherwise a reduced copy.
+	 */
+	private static BufferedImage fit(BufferedImage image, double width, double height) {
+		double scale = 1;
+		if (width > 0)
+			scale = Math.min(scale, width / image.getWidth());
+		if (height > 0)
+			scale = Math.min(scale, height / image.getHeight());
+		if (scale >= 1)
+			return image;
+
+		int targetWidth = Math.max(1, (int) (image.getWidth() * scale));
+		int targetHeight = Math.max(1, (int) (image.getHeight() * scale));
+
+		BufferedImage reduced = image;
+		while (reduced.getWidth() / 2 >= targetWidth    &&    reduced.getHeight() / 2 >= targetHeight){
+			reduced = scale(reduced, reduced.getWidth() / 2, reduced.getHeight() / 2);
+		}
+		if (reduced.getWidth() != targetWidth    ||    reduced.getHeight() != targetHeight)
+			reduced = scale(reduced, targetWidth, targetHeight);
+		return reduced;
+	}
+
+
+	private static BufferedImage scale(BufferedImage image, int width, int height) {
+		BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = scaled.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		graphics.drawImage(image, 0, 0, width, height, null);
+		graphics.dispose();
+		return scaled;
+	}
+}